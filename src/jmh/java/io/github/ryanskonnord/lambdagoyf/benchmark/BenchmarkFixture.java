@@ -0,0 +1,115 @@
+/*
+ * Lambdagoyf: A Software Suite for MTG Hobbyists
+ * https://github.com/RyanSkonnord/lambdagoyf
+ *
+ * Copyright 2024 Ryan Skonnord
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ryanskonnord.lambdagoyf.benchmark;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import io.github.ryanskonnord.lambdagoyf.card.IngestionReport;
+import io.github.ryanskonnord.lambdagoyf.scryfall.SyntheticDropGenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A synthetic bulk data drop, checked in with the benchmarks so that they run the same way everywhere and without a
+ * network. Its 504 entries in seven expansions are generated, not taken from a real drop, but follow the schema of a
+ * {@code default_cards} download: split, transforming and reversible cards, foreign-language printings, MTGO and Arena
+ * IDs and one unrecognized key.
+ */
+public final class BenchmarkFixture {
+    private BenchmarkFixture() {
+        throw new RuntimeException();
+    }
+
+    private static final ImmutableList<String> FILENAMES = ImmutableList.of(
+            "manifest.json", "sets.json", "default-cards-20240101100000.json");
+
+    /**
+     * Copy the fixture into a new temporary directory, which the parser can also write its snapshot into.
+     */
+    public static Path copyToTemporaryDirectory() throws IOException {
+        Path directory = Files.createTempDirectory("lambdagoyf-benchmark");
+        for (String filename : FILENAMES) {
+            try (InputStream resource = BenchmarkFixture.class.getResourceAsStream("fixture/" + filename)) {
+                if (resource == null) {
+                    throw new IOException("Missing fixture file: " + filename);
+                }
+                Files.copy(resource, directory.resolve(filename));
+            }
+        }
+        return directory;
+    }
+
+    /**
+     * Copy the fixture into a new temporary directory, enlarged to a multiple of its size by a
+     * {@link SyntheticDropGenerator}.
+     */
+    public static Path copyToTemporaryDirectory(int scale) throws IOException {
+        Path source = copyToTemporaryDirectory();
+        if (scale == 1) {
+            return source;
+        }
+        Path directory = Files.createTempDirectory("lambdagoyf-benchmark");
+        new SyntheticDropGenerator.Builder().withScale(scale).build().generate(source, directory);
+        delete(source);
+        return directory;
+    }
+
+    /**
+     * Copy an existing drop, such as a real download under {@code Environment.getScryfallResourcePath()}, into a new
+     * temporary directory, enlarged to a multiple of its size like the fixture. The copy leaves out any snapshot or
+     * report already in the drop, and keeps the parser from writing its own into the original. An empty path copies
+     * the checked-in fixture instead.
+     */
+    public static Path copyToTemporaryDirectory(String drop, int scale) throws IOException {
+        if (drop.isEmpty()) {
+            return copyToTemporaryDirectory(scale);
+        }
+        Path source = Files.createTempDirectory("lambdagoyf-benchmark");
+        List<Path> files;
+        try (Stream<Path> list = Files.list(Path.of(drop))) {
+            files = list.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            String filename = file.getFileName().toString();
+            if ((filename.endsWith(".json") || filename.endsWith(".json.gz"))
+                    && !filename.equals(IngestionReport.FILENAME)) {
+                Files.copy(file, source.resolve(filename));
+            }
+        }
+        if (scale == 1) {
+            return source;
+        }
+        Path directory = Files.createTempDirectory("lambdagoyf-benchmark");
+        new SyntheticDropGenerator.Builder().withScale(scale).build().generate(source, directory);
+        delete(source);
+        return directory;
+    }
+
+    public static void delete(Path directory) throws IOException {
+        MoreFiles.deleteRecursively(directory, RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+}
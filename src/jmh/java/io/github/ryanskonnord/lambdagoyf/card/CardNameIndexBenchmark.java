@@ -0,0 +1,107 @@
+/*
+ * Lambdagoyf: A Software Suite for MTG Hobbyists
+ * https://github.com/RyanSkonnord/lambdagoyf
+ *
+ * Copyright 2024 Ryan Skonnord
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ryanskonnord.lambdagoyf.card;
+
+import com.google.common.collect.ImmutableList;
+import io.github.ryanskonnord.lambdagoyf.benchmark.BenchmarkFixture;
+import io.github.ryanskonnord.lambdagoyf.scryfall.ScryfallParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures approximate and prefix searches of a spoiler's names, with queries made by swapping two letters in names
+ * from the spoiler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+public class CardNameIndexBenchmark {
+
+    /**
+     * How many times larger than the checked-in fixture to make the drop.
+     */
+    @Param({"1"})
+    public int scale;
+
+    private Path directory;
+    private CardNameIndex index;
+    private ImmutableList<String> misspellings;
+    private ImmutableList<String> prefixes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = BenchmarkFixture.copyToTemporaryDirectory(scale);
+        Spoiler spoiler = new ScryfallParser.Builder().build().parseScryfallData(directory).createSpoiler();
+        index = spoiler.getNameIndex().orElseThrow();
+        ImmutableList<String> names = spoiler.getCards().stream()
+                .map(Card::getFullName)
+                .filter(name -> name.length() >= 8)
+                .limit(64)
+                .collect(ImmutableList.toImmutableList());
+        misspellings = names.stream()
+                .map((String name) -> {
+                    int middle = name.length() / 2;
+                    return name.substring(0, middle) + name.charAt(middle + 1) + name.charAt(middle)
+                            + name.substring(middle + 2);
+                })
+                .collect(ImmutableList.toImmutableList());
+        prefixes = names.stream()
+                .map(name -> name.substring(0, 3))
+                .collect(ImmutableList.toImmutableList());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFixture.delete(directory);
+    }
+
+    @Benchmark
+    public void search(Blackhole blackhole) {
+        for (String misspelling : misspellings) {
+            blackhole.consume(index.search(misspelling));
+        }
+    }
+
+    @Benchmark
+    public void searchPrefix(Blackhole blackhole) {
+        for (String prefix : prefixes) {
+            blackhole.consume(index.searchPrefix(prefix, 10));
+        }
+    }
+}
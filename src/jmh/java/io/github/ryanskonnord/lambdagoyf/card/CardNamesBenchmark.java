@@ -0,0 +1,79 @@
+/*
+ * Lambdagoyf: A Software Suite for MTG Hobbyists
+ * https://github.com/RyanSkonnord/lambdagoyf
+ *
+ * Copyright 2024 Ryan Skonnord
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ryanskonnord.lambdagoyf.card;
+
+import com.google.common.collect.ImmutableList;
+import io.github.ryanskonnord.lambdagoyf.benchmark.BenchmarkFixture;
+import io.github.ryanskonnord.lambdagoyf.scryfall.ScryfallParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures normalizing every name that a spoiler indexes, in the original and the current way.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+public class CardNamesBenchmark {
+
+    private ImmutableList<String> names;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path directory = BenchmarkFixture.copyToTemporaryDirectory();
+        try {
+            Spoiler spoiler = new ScryfallParser.Builder().build().parseScryfallData(directory).createSpoiler();
+            names = CardNames.getNamesToCheck(spoiler).collect(ImmutableList.toImmutableList());
+        } finally {
+            BenchmarkFixture.delete(directory);
+        }
+    }
+
+    @Benchmark
+    public void normalizeWithPattern(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(CardNames.normalizeWithPattern(name));
+        }
+    }
+
+    @Benchmark
+    public void normalize(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(CardNames.normalize(name));
+        }
+    }
+}
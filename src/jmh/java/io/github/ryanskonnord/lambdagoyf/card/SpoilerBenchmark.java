@@ -0,0 +1,130 @@
+/*
+ * Lambdagoyf: A Software Suite for MTG Hobbyists
+ * https://github.com/RyanSkonnord/lambdagoyf
+ *
+ * Copyright 2024 Ryan Skonnord
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ryanskonnord.lambdagoyf.card;
+
+import com.google.common.collect.ImmutableBiMap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import io.github.ryanskonnord.lambdagoyf.benchmark.BenchmarkFixture;
+import io.github.ryanskonnord.lambdagoyf.card.field.Language;
+import io.github.ryanskonnord.lambdagoyf.scryfall.ScryfallParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building a spoiler from parsed entries as a whole, and each of the spoiler's indexes on its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+public class SpoilerBenchmark {
+
+    /**
+     * How many times larger than the checked-in fixture to make the drop.
+     */
+    @Param({"1"})
+    public int scale;
+
+    private Path directory;
+    private CardFactory factory;
+    private Spoiler spoiler;
+    private ImmutableList<Card> cards;
+    private ImmutableSet<Expansion> expansions;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = BenchmarkFixture.copyToTemporaryDirectory(scale);
+        factory = new ScryfallParser.Builder().build().parseScryfallData(directory);
+        spoiler = factory.createSpoiler();
+        cards = ImmutableList.copyOf(spoiler.getCards());
+        expansions = Spoiler.buildExpansionIndex(cards).keySet();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFixture.delete(directory);
+    }
+
+    @Benchmark
+    public Spoiler createSpoiler() {
+        return factory.createSpoiler();
+    }
+
+    @Benchmark
+    public ImmutableMap<UUID, Card> indexCards() {
+        return Spoiler.checkScryfallIdUniqueness(cards.stream());
+    }
+
+    @Benchmark
+    public ImmutableMap<UUID, CardEdition> indexEditions() {
+        return Spoiler.checkScryfallIdUniqueness(cards.stream().flatMap(c -> c.getEditions().stream()));
+    }
+
+    @Benchmark
+    public ImmutableMap<String, Card> nameDictionary() {
+        return Spoiler.buildNameDictionary(cards);
+    }
+
+    @Benchmark
+    public CardNameIndex nameIndex() {
+        return CardNameIndex.create(spoiler.getNameDictionary());
+    }
+
+    @Benchmark
+    public ImmutableBiMap<Long, MtgoCard> mtgoIds() {
+        return Spoiler.buildMtgoIdMap(cards);
+    }
+
+    @Benchmark
+    public ImmutableMap<Language, LocalizedSpoiler> localizedSpoilers() {
+        return Spoiler.buildLocalizedSpoilers(spoiler, cards);
+    }
+
+    @Benchmark
+    public ImmutableSetMultimap<Expansion, CardEdition> editionsByExpansion() {
+        return Spoiler.buildExpansionIndex(cards);
+    }
+
+    @Benchmark
+    public ImmutableMap<String, Expansion> expansionNames() {
+        return Spoiler.buildExpansionNameMap(expansions);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Lambdagoyf: A Software Suite for MTG Hobbyists
+ * https://github.com/RyanSkonnord/lambdagoyf
+ *
+ * Copyright 2024 Ryan Skonnord
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ryanskonnord.lambdagoyf.scryfall;
+
+import io.github.ryanskonnord.lambdagoyf.benchmark.BenchmarkFixture;
+import io.github.ryanskonnord.lambdagoyf.card.CardFactory;
+import io.github.ryanskonnord.lambdagoyf.card.Spoiler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+public class ScryfallParserBenchmark {
+
+    @Param({"TREE", "STREAMING", "TYPED", "PARALLEL"})
+    public ScryfallParser.Decoding decoding;
+
+    @Param({"false", "true"})
+    public boolean snapshot;
+
+    /**
+     * How many times larger than the checked-in fixture to make the drop.
+     */
+    @Param({"1"})
+    public int scale;
+
+    /**
+     * An existing drop directory to benchmark instead of the checked-in fixture, such as the {@code current} download
+     * under {@code Environment.getScryfallResourcePath()}. It is copied first, so the snapshot is not written into it.
+     */
+    @Param({""})
+    public String drop;
+
+    private Path directory;
+    private ScryfallParser parser;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = BenchmarkFixture.copyToTemporaryDirectory(drop, scale);
+        parser = new ScryfallParser.Builder().withDecoding(decoding).withSnapshot(snapshot).build();
+        if (snapshot) {
+            // Write the snapshot outside of the measurement, so that every iteration reads it
+            parser.parseScryfallData(directory);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFixture.delete(directory);
+    }
+
+    @Benchmark
+    public CardFactory parseScryfallData() throws IOException {
+        return parser.parseScryfallData(directory);
+    }
+
+    /**
+     * Carry on to a spoiler, so that a decoding mode's effect on the garbage left for card construction is counted.
+     */
+    @Benchmark
+    public Spoiler parseAndCreateSpoiler() throws IOException {
+        return parser.parseScryfallData(directory).createSpoiler();
+    }
+}
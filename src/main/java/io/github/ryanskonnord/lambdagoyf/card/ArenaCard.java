@@ -34,6 +34,7 @@ import io.github.ryanskonnord.lambdagoyf.deck.ArenaDeckEntry;
 import io.github.ryanskonnord.lambdagoyf.deck.ArenaVersionId;
 import io.github.ryanskonnord.util.MapCollectors;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.Month;
 import java.util.List;
@@ -154,6 +155,16 @@ public final class ArenaCard implements CardVersion, Comparable<ArenaCard> {
         this.versionId = Objects.requireNonNull(versionId);
     }
 
+    ArenaCard(CardEdition parent, SpoilerSnapshot.Input in) throws IOException {
+        this(parent, in.readOptionalLong(), new ArenaVersionId(in.readString(), in.readVarInt()));
+    }
+
+    void writeTo(SpoilerSnapshot.Output out) throws IOException {
+        out.writeOptionalLong(arenaId);
+        out.writeString(versionId.getExpansionCode());
+        out.writeVarInt(versionId.getCollectorNumber());
+    }
+
 
     @Override
     public CardEdition getEdition() {
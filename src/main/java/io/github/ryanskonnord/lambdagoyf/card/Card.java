@@ -27,6 +27,7 @@ import io.github.ryanskonnord.lambdagoyf.scryfall.ScryfallCardEntry;
 import io.github.ryanskonnord.lambdagoyf.scryfall.ScryfallCardFace;
 import io.github.ryanskonnord.util.MapCollectors;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
@@ -117,12 +118,10 @@ public final class Card extends ScryfallEntity
 
         faces = builder.getFaces();
         editions = builder.getEditions();
-        illustrations = editions.stream().collect(MapCollectors.<CardEdition>collecting()
-                .indexing(CardEdition::getIllustration)
-                .grouping().toImmutableListMultimap());
+        illustrations = groupIllustrations(editions);
 
         layout = Word.of(CardLayout.class, builder.getCommon(ScryfallCardEntry::getLayout));
-        colors = faces.stream().flatMap((CardFace f) -> f.getColors().stream()).collect(ColorSet.toColorSet());
+        colors = combineColors(faces);
         colorIdentity = builder.getCommon(e -> ColorSet.fromStrings(e.getColorIdentity()));
         cmc = builder.getCommon(ScryfallCardEntry::getCmc).intValue();
         legalities = factory.getLegalityFactory().merge(editions.stream().map(CardEdition::getCardLegality));
@@ -130,6 +129,56 @@ public final class Card extends ScryfallEntity
         hasContentWarning = builder.getCommonIfPresent(ScryfallCardEntry::getContentWarning).orElse(false);
     }
 
+    /**
+     * Restore a card that {@link #writeTo} wrote to a {@link SpoilerSnapshot}.
+     */
+    Card(SpoilerSnapshot.Input in) throws IOException {
+        scryfallId = in.readUuid();
+        name = in.readString();
+        layout = in.readWord(CardLayout.class);
+        colorIdentity = in.readColorSet();
+        cmc = in.readVarInt();
+        legalities = in.readLegality();
+        isReserved = in.readBoolean();
+        hasContentWarning = in.readBoolean();
+
+        faces = in.readList((int faceIndex) -> new CardFace(this, faceIndex, in));
+        editions = in.readList((int index) -> new CardEdition(this, in));
+        illustrations = groupIllustrations(editions);
+        colors = combineColors(faces);
+    }
+
+    void writeTo(SpoilerSnapshot.Output out) throws IOException {
+        out.writeUuid(scryfallId);
+        out.writeString(name);
+        out.writeWord(layout);
+        out.writeColorSet(colorIdentity);
+        out.writeVarInt(cmc);
+        out.writeLegality(legalities);
+        out.writeBoolean(isReserved);
+        out.writeBoolean(hasContentWarning);
+
+        out.writeVarInt(faces.size());
+        for (CardFace face : faces) {
+            face.writeTo(out);
+        }
+        out.writeVarInt(editions.size());
+        for (CardEdition edition : editions) {
+            edition.writeTo(out);
+        }
+    }
+
+    private static ImmutableListMultimap<CardIllustration, CardEdition> groupIllustrations(
+            Collection<CardEdition> editions) {
+        return editions.stream().collect(MapCollectors.<CardEdition>collecting()
+                .indexing(CardEdition::getIllustration)
+                .grouping().toImmutableListMultimap());
+    }
+
+    private static ColorSet combineColors(Collection<CardFace> faces) {
+        return faces.stream().flatMap((CardFace f) -> f.getColors().stream()).collect(ColorSet.toColorSet());
+    }
+
 
     @Override
     public UUID getScryfallId() {
@@ -39,6 +39,7 @@ import io.github.ryanskonnord.lambdagoyf.scryfall.ScryfallCardEntry;
 import io.github.ryanskonnord.lambdagoyf.scryfall.ScryfallCardFace;
 import io.github.ryanskonnord.util.MapCollectors;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.util.Collection;
 import java.util.Iterator;
@@ -115,6 +116,73 @@ public final class CardEdition extends ScryfallEntity
                 .collect(ImmutableSet.toImmutableSet());
     }
 
+    CardEdition(Card parentCard, SpoilerSnapshot.Input in) throws IOException {
+        parent = Objects.requireNonNull(parentCard);
+        scryfallId = in.readUuid();
+        faces = in.readList((int faceIndex) -> new CardEditionFace(this, faceIndex, in));
+        illustration = CardIllustration.from(faces);
+
+        expansion = in.readExpansion();
+        language = in.readWord(Language.class);
+        rarity = in.readWord(Rarity.class);
+        collectorNumber = CollectorNumber.parse(in.readString());
+        releaseDate = in.readDate();
+        isInBooster = in.readBoolean();
+        cardLegality = in.readLegality();
+
+        borderColor = in.readWord(BorderColor.class);
+        frameStyle = in.readWord(FrameStyle.class);
+        securityStamp = in.readWord(SecurityStamp.class);
+        frameEffects = in.readWordSet(FrameEffect.class);
+        promoTypes = in.readWordSet(PromoType.class);
+        isFullArt = in.readBoolean();
+
+        paperFinishes = in.readFinishes();
+        arenaCard = in.readBoolean() ? new ArenaCard(this, in) : null;
+        OptionalLong nonfoilId = in.readOptionalLong();
+        mtgoNonfoil = nonfoilId.isPresent() ? new MtgoCard(nonfoilId.getAsLong(), this, Finish.NONFOIL) : null;
+        OptionalLong foilId = in.readOptionalLong();
+        mtgoFoil = foilId.isPresent() ? new MtgoCard(foilId.getAsLong(), this, Finish.FOIL) : null;
+
+        relatedParts = ImmutableSet.copyOf(in.readList((int index) -> in.readUuid()));
+    }
+
+    void writeTo(SpoilerSnapshot.Output out) throws IOException {
+        out.writeUuid(scryfallId);
+        out.writeVarInt(faces.size());
+        for (CardEditionFace face : faces) {
+            face.writeTo(out);
+        }
+
+        out.writeExpansion(expansion);
+        out.writeWord(language);
+        out.writeWord(rarity);
+        out.writeString(collectorNumber.getCollectorString());
+        out.writeDate(releaseDate);
+        out.writeBoolean(isInBooster);
+        out.writeLegality(cardLegality);
+
+        out.writeWord(borderColor);
+        out.writeWord(frameStyle);
+        out.writeWord(securityStamp);
+        out.writeWordSet(frameEffects);
+        out.writeWordSet(promoTypes);
+        out.writeBoolean(isFullArt);
+
+        out.writeFinishes(paperFinishes);
+        out.writeBoolean(arenaCard != null);
+        if (arenaCard != null) {
+            arenaCard.writeTo(out);
+        }
+        out.writeOptionalLong(mtgoNonfoil == null ? OptionalLong.empty() : OptionalLong.of(mtgoNonfoil.getMtgoId()));
+        out.writeOptionalLong(mtgoFoil == null ? OptionalLong.empty() : OptionalLong.of(mtgoFoil.getMtgoId()));
+
+        out.writeVarInt(relatedParts.size());
+        for (UUID relatedPart : relatedParts) {
+            out.writeUuid(relatedPart);
+        }
+    }
+
     private ImmutableList<CardEditionFace> buildFaces(ScryfallCardEntry entry) {
         ImmutableList<ScryfallCardFace> faceData = entry.getFaceStream().collect(ImmutableList.toImmutableList());
         return IntStream.range(0, faceData.size())
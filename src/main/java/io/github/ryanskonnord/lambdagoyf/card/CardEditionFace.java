@@ -23,6 +23,7 @@ import com.google.common.base.Preconditions;
 import io.github.ryanskonnord.lambdagoyf.card.field.Watermark;
 import io.github.ryanskonnord.lambdagoyf.scryfall.ScryfallCardFace;
 
+import java.io.IOException;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
@@ -52,6 +53,27 @@ public final class CardEditionFace implements Comparable<CardEditionFace> {
         watermark = data.getWatermark().map(w -> Word.of(Watermark.class, w));
     }
 
+    CardEditionFace(CardEdition parent, int faceIndex, SpoilerSnapshot.Input in) throws IOException {
+        this.parent = Objects.requireNonNull(parent);
+        this.faceIndex = faceIndex;
+
+        printedName = in.readOptionalString();
+        flavorName = in.readOptionalString();
+        artist = in.readOptionalString();
+        flavorText = in.readOptionalString();
+        illustrationId = in.readOptionalUuid();
+        watermark = Optional.ofNullable(in.readWord(Watermark.class));
+    }
+
+    void writeTo(SpoilerSnapshot.Output out) throws IOException {
+        out.writeOptionalString(printedName);
+        out.writeOptionalString(flavorName);
+        out.writeOptionalString(artist);
+        out.writeOptionalString(flavorText);
+        out.writeOptionalUuid(illustrationId);
+        out.writeWord(watermark.orElse(null));
+    }
+
     public CardEdition getParentEdition() {
         return parent;
     }
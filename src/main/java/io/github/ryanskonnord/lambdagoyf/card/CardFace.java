@@ -24,6 +24,7 @@ import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
 import io.github.ryanskonnord.lambdagoyf.scryfall.ScryfallCardFace;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
@@ -62,6 +63,33 @@ public final class CardFace implements Comparable<CardFace> {
         loyalty = builder.getCommon(ScryfallCardFace::getLoyalty).map(WrittenNumber::create);
     }
 
+    CardFace(Card parent, int faceIndex, SpoilerSnapshot.Input in) throws IOException {
+        this.parent = Objects.requireNonNull(parent);
+        this.faceIndex = faceIndex;
+
+        name = in.readString();
+        manaCost = in.readOptionalString();
+        typeLine = in.readTypeLine();
+        oracleText = in.readString();
+        colors = in.readColorSet();
+        colorIndicator = Optional.ofNullable(in.readColorSet());
+        power = in.readOptionalString().map(WrittenNumber::create);
+        toughness = in.readOptionalString().map(WrittenNumber::create);
+        loyalty = in.readOptionalString().map(WrittenNumber::create);
+    }
+
+    void writeTo(SpoilerSnapshot.Output out) throws IOException {
+        out.writeString(name);
+        out.writeOptionalString(manaCost);
+        out.writeTypeLine(typeLine);
+        out.writeString(oracleText);
+        out.writeColorSet(colors);
+        out.writeColorSet(colorIndicator.orElse(null));
+        out.writeOptionalString(power.map(WrittenNumber::getWrittenValue));
+        out.writeOptionalString(toughness.map(WrittenNumber::getWrittenValue));
+        out.writeOptionalString(loyalty.map(WrittenNumber::getWrittenValue));
+    }
+
     public Card getParent() {
         return parent;
     }
@@ -21,19 +21,32 @@ package io.github.ryanskonnord.lambdagoyf.card;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import io.github.ryanskonnord.lambdagoyf.card.field.Finish;
+import io.github.ryanskonnord.lambdagoyf.diagnostics.CardConstructionEvent;
 import io.github.ryanskonnord.lambdagoyf.scryfall.ScryfallCardEntry;
 import io.github.ryanskonnord.util.MapCollectors;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public final class CardFactory {
 
@@ -50,21 +63,157 @@ public final class CardFactory {
             .maximumSize(800).build();
 
     public CardFactory(ExpansionSpoiler expansions, Collection<ScryfallCardEntry> entries) {
-        this.expansions = Objects.requireNonNull(expansions);
-        this.entries = entries.stream().collect(MapCollectors.<ScryfallCardEntry>collecting()
+        this(expansions, entries.stream().collect(MapCollectors.<ScryfallCardEntry>collecting()
                 .indexing(ScryfallCardEntry::getOracleId)
-                .grouping().toImmutableListMultimap());
+                .grouping().toImmutableListMultimap()));
+    }
+
+    private CardFactory(ExpansionSpoiler expansions, ImmutableMultimap<UUID, ScryfallCardEntry> entries) {
+        this.expansions = Objects.requireNonNull(expansions);
+        this.entries = Objects.requireNonNull(entries);
         this.arenaFactory = new ArenaCard.Factory(ArenaIdFix.loadFromResources(), this.expansions);
     }
 
+    /**
+     * Groups entries by oracle ID as they arrive, so that a caller reading entries one at a time never needs to hold
+     * a separate list of them.
+     */
+    public static final class Builder {
+        private final ExpansionSpoiler expansions;
+        private final ImmutableListMultimap.Builder<UUID, ScryfallCardEntry> entries = ImmutableListMultimap.builder();
+
+        public Builder(ExpansionSpoiler expansions) {
+            this.expansions = Objects.requireNonNull(expansions);
+        }
+
+        public Builder add(ScryfallCardEntry entry) {
+            entries.put(entry.getOracleId(), entry);
+            return this;
+        }
+
+        public CardFactory build() {
+            return new CardFactory(expansions, entries.build());
+        }
+    }
+
+    /**
+     * Create a factory with the same expansions in which each of the given entries replaces any entry that has the same
+     * Scryfall ID, or is added if there is none.
+     */
+    public CardFactory withOverlay(Collection<ScryfallCardEntry> overlay) {
+        if (overlay.isEmpty()) return this;
+        Set<UUID> replacedIds = overlay.stream().map(ScryfallCardEntry::getId).collect(Collectors.toSet());
+        ImmutableListMultimap.Builder<UUID, ScryfallCardEntry> merged = ImmutableListMultimap.builder();
+        for (ScryfallCardEntry entry : entries.values()) {
+            if (!replacedIds.contains(entry.getId())) {
+                merged.put(entry.getOracleId(), entry);
+            }
+        }
+        for (ScryfallCardEntry entry : overlay) {
+            merged.put(entry.getOracleId(), entry);
+        }
+        return new CardFactory(expansions, merged.build());
+    }
+
     public Spoiler createSpoiler() {
-        List<Card> parsed = entries.asMap().values().parallelStream()
-                .map((Collection<ScryfallCardEntry> entryGroup) -> new Card(this, entryGroup))
-                .collect(Collectors.toList());
-        Spoiler spoiler = new Spoiler(parsed);
+        return createSpoiler(IngestionReport.Recorder.disabled());
+    }
+
+    /**
+     * Create a spoiler, recording the cost of constructing its cards and of each of its indexes.
+     */
+    public Spoiler createSpoiler(IngestionReport.Recorder recorder) {
+        return createSpoiler(recorder, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a spoiler, recording the cost of constructing its cards and of each of its indexes.
+     *
+     * @param indexExecutor builds the spoiler's indexes concurrently, unless the recorder is enabled
+     */
+    public Spoiler createSpoiler(IngestionReport.Recorder recorder, Executor indexExecutor) {
+        CardConstructionEvent event = new CardConstructionEvent();
+        event.begin();
+        List<Card> parsed = recorder.measure("cards",
+                () -> entries.asMap().values().parallelStream()
+                        .map((Collection<ScryfallCardEntry> entryGroup) -> new Card(this, entryGroup))
+                        .collect(Collectors.toList()),
+                List::size);
+        commitConstructionEvent(event, parsed.size(), 0);
+        Spoiler spoiler = new Spoiler(parsed, recorder, indexExecutor);
         return spoiler;
     }
 
+    /**
+     * Create a spoiler, reusing each card from a previous revision if the content hashes of its entries are all the
+     * same as before. A card is only reused if every expansion it refers to is this factory's own {@link Expansion}
+     * instance, so a change to one set's data rebuilds only the cards printed in it.
+     *
+     * @param entryHashes a hash of the fields of each entry that its card is built from, by Scryfall ID; a field
+     *                    that no card reads, such as a price, should be left out so that it can't force a rebuild
+     */
+    public SpoilerRevision createSpoilerRevision(Map<UUID, HashCode> entryHashes, Optional<SpoilerRevision> previous) {
+        return createSpoilerRevision(entryHashes, previous, IngestionReport.Recorder.disabled(),
+                ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a spoiler from a previous revision, recording the cost of constructing its cards and of each of its
+     * indexes.
+     *
+     * @param entryHashes   a hash of the fields of each entry that its card is built from, by Scryfall ID
+     * @param indexExecutor builds the spoiler's indexes concurrently, unless the recorder is enabled
+     */
+    public SpoilerRevision createSpoilerRevision(Map<UUID, HashCode> entryHashes, Optional<SpoilerRevision> previous,
+                                                 IngestionReport.Recorder recorder, Executor indexExecutor) {
+        ImmutableMap<UUID, HashCode> groupHashes = entries.asMap().entrySet().stream()
+                .flatMap((Map.Entry<UUID, Collection<ScryfallCardEntry>> group) -> {
+                    List<HashCode> hashes = new ArrayList<>(group.getValue().size());
+                    for (ScryfallCardEntry entry : group.getValue()) {
+                        HashCode hash = entryHashes.get(entry.getId());
+                        if (hash == null) return Stream.empty();
+                        hashes.add(hash);
+                    }
+                    return Stream.of(Maps.immutableEntry(group.getKey(), Hashing.combineUnordered(hashes)));
+                })
+                .collect(ImmutableMap.toImmutableMap(Map.Entry::getKey, Map.Entry::getValue));
+
+        CardConstructionEvent event = new CardConstructionEvent();
+        event.begin();
+        LongAdder rebuiltCount = new LongAdder();
+        List<Card> cards = recorder.measure("cards",
+                () -> entries.asMap().entrySet().parallelStream()
+                        .map((Map.Entry<UUID, Collection<ScryfallCardEntry>> group) -> {
+                            UUID oracleId = group.getKey();
+                            HashCode hash = groupHashes.get(oracleId);
+                            Optional<Card> reused = previous
+                                    .filter(p -> hash != null && hash.equals(p.getGroupHash(oracleId)))
+                                    .flatMap(p -> p.getSpoiler().lookUpCardByUuid(oracleId))
+                                    .filter(card -> card.getEditions().stream()
+                                            .allMatch(e -> expansions.containsInstance(e.getExpansion())));
+                            if (reused.isPresent()) {
+                                return reused.get();
+                            }
+                            rebuiltCount.increment();
+                            return new Card(this, group.getValue());
+                        })
+                        .collect(Collectors.toList()),
+                List::size);
+        commitConstructionEvent(event, rebuiltCount.longValue(), cards.size() - rebuiltCount.longValue());
+        return new SpoilerRevision(new Spoiler(cards, recorder, indexExecutor), expansions, groupHashes,
+                rebuiltCount.intValue());
+    }
+
+    private void commitConstructionEvent(CardConstructionEvent event, long cardsBuilt, long cardsReused) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.entries = entries.size();
+            event.cardsBuilt = cardsBuilt;
+            event.cardsReused = cardsReused;
+            event.commit();
+        }
+    }
+
     public CardLegality.Factory getLegalityFactory() {
         return legalityFactory;
     }
@@ -0,0 +1,71 @@
+/*
+ * Lambdagoyf: A Software Suite for MTG Hobbyists
+ * https://github.com/RyanSkonnord/lambdagoyf
+ *
+ * Copyright 2024 Ryan Skonnord
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ryanskonnord.lambdagoyf.card;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.MoreCollectors;
+import io.github.ryanskonnord.lambdagoyf.deck.ArenaDeckEntry;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * The lookups that a {@link Spoiler} provides without scanning every card, so that they can also be served by a
+ * backend that builds cards only on demand, such as {@link MappedSpoiler}.
+ */
+public interface CardLookup {
+
+    public Optional<Card> lookUpCardByUuid(UUID uuid);
+
+    public Optional<CardEdition> lookUpEditionByUuid(UUID uuid);
+
+    public Optional<Card> lookUpByName(String name);
+
+    /**
+     * @return an index for finding cards by an approximate or partial name, if this lookup has one
+     */
+    public default Optional<CardNameIndex> getNameIndex() {
+        return Optional.empty();
+    }
+
+    public Optional<MtgoCard> lookUpByMtgoId(long mtgoId);
+
+    public default Optional<ArenaCard> lookUpByArenaDeckEntry(ArenaDeckEntry entry) {
+        return lookUpByName(entry.getCardName()).flatMap((Card card) ->
+                card.getEditions().stream()
+                        .map(CardEdition::getArenaCard)
+                        .flatMap(Optional::stream)
+                        .filter(arenaCard -> arenaCard.getDeckEntry().equals(entry))
+                        .collect(MoreCollectors.toOptional()));
+    }
+
+    public ImmutableSet<CardEdition> getAllFromExpansion(Expansion expansion);
+
+    public default Optional<CardEdition> getByCollectorNumber(Expansion expansion, CollectorNumber number) {
+        return getAllFromExpansion(expansion).stream()
+                .filter(e -> e.getCollectorNumber().equals(number))
+                .collect(MoreCollectors.toOptional());
+    }
+
+    public ImmutableSet<Expansion> getExpansions();
+
+    public Optional<Expansion> getExpansion(String name);
+
+}
@@ -0,0 +1,257 @@
+/*
+ * Lambdagoyf: A Software Suite for MTG Hobbyists
+ * https://github.com/RyanSkonnord/lambdagoyf
+ *
+ * Copyright 2024 Ryan Skonnord
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ryanskonnord.lambdagoyf.card;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Approximate and prefix search over a spoiler's name dictionary, for resolving names that a person typed.
+ * <p>
+ * Names are compared after {@link CardNames#normalize} by their optimal string alignment distance: the Levenshtein
+ * distance, except that swapping two adjacent characters counts as one edit. The names are kept in sorted order, which
+ * serves as an implicit trie. A search walks it with one row of the distance table per character, reusing the rows of
+ * a prefix that a name shares with the one before it, and skips every name under a prefix as soon as the prefix is too
+ * far from the query for any of them to match.
+ */
+public final class CardNameIndex {
+
+    private final String[] names;
+    private final Card[] cards;
+    private final int maxNameLength;
+
+    private CardNameIndex(String[] names, Card[] cards) {
+        this.names = names;
+        this.cards = cards;
+        this.maxNameLength = Arrays.stream(names).mapToInt(String::length).max().orElse(0);
+    }
+
+    /**
+     * @param nameDictionary cards by normalized name
+     */
+    public static CardNameIndex create(Map<String, ? extends Card> nameDictionary) {
+        String[] names = nameDictionary.keySet().toArray(new String[0]);
+        Arrays.sort(names);
+        Card[] cards = new Card[names.length];
+        for (int i = 0; i < names.length; i++) {
+            cards[i] = nameDictionary.get(names[i]);
+        }
+        return new CardNameIndex(names, cards);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public static final class Match {
+        private final String name;
+        private final Card card;
+        private final int distance;
+        private final double confidence;
+
+        private Match(String query, String name, Card card, int distance) {
+            this.name = Objects.requireNonNull(name);
+            this.card = Objects.requireNonNull(card);
+            this.distance = distance;
+            this.confidence = 1.0 - (double) distance / Math.max(1, Math.max(query.length(), name.length()));
+        }
+
+        /**
+         * @return the normalized name that matched, which may be any of the card's face or printed names
+         */
+        public String getName() {
+            return name;
+        }
+
+        public Card getCard() {
+            return card;
+        }
+
+        public int getDistance() {
+            return distance;
+        }
+
+        /**
+         * @return the fraction of the longer of the query and the matched name that needed no edits, from 0 to 1
+         */
+        public double getConfidence() {
+            return confidence;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (distance %d, confidence %.2f)", card.getFullName(), distance, confidence);
+        }
+    }
+
+    private static final Comparator<Match> RANKING = Comparator.comparingInt(Match::getDistance)
+            .thenComparing(Match::getName);
+
+    /**
+     * How far a typed name may be from a card name to be considered a match: not at all for a name of three characters
+     * or fewer, one edit for up to seven and two beyond that.
+     */
+    public static int getDefaultMaxDistance(String name) {
+        return Math.min(2, CardNames.normalize(name).length() / 4);
+    }
+
+    public ImmutableList<Match> search(String name) {
+        return search(name, getDefaultMaxDistance(name));
+    }
+
+    /**
+     * Find every card with a name within an edit distance of the given name.
+     *
+     * @return one match for each card, using its closest name, ranked by distance and then by name
+     */
+    public ImmutableList<Match> search(String name, int maxDistance) {
+        String query = CardNames.normalize(name);
+        int queryLength = query.length();
+        int[][] rows = new int[maxNameLength + 1][queryLength + 1];
+        for (int j = 0; j <= queryLength; j++) {
+            rows[0][j] = j;
+        }
+
+        List<Match> matches = new ArrayList<>();
+        String previous = "";
+        int computedDepth = 0;
+        int i = 0;
+        while (i < names.length) {
+            String candidate = names[i];
+            int depth = commonPrefixLength(previous, candidate, computedDepth);
+            boolean pruned = false;
+            while (depth < candidate.length()) {
+                depth++;
+                if (fillRow(rows, depth, query, candidate) > maxDistance) {
+                    pruned = true;
+                    break;
+                }
+            }
+            previous = candidate;
+            if (pruned) {
+                computedDepth = depth;
+                i = skipPrefix(i, candidate, depth);
+            } else {
+                computedDepth = candidate.length();
+                int distance = rows[candidate.length()][queryLength];
+                if (distance <= maxDistance) {
+                    matches.add(new Match(query, candidate, cards[i], distance));
+                }
+                i++;
+            }
+        }
+
+        matches.sort(RANKING);
+        Map<Card, Match> closestByCard = new LinkedHashMap<>();
+        for (Match match : matches) {
+            closestByCard.putIfAbsent(match.getCard(), match);
+        }
+        return ImmutableList.copyOf(closestByCard.values());
+    }
+
+    /**
+     * Fill in the row of the distance table for the first {@code depth} characters of a candidate name.
+     *
+     * @return the smallest value in the row, which no name with this prefix can be closer than
+     */
+    private static int fillRow(int[][] rows, int depth, String query, String candidate) {
+        int[] row = rows[depth];
+        int[] above = rows[depth - 1];
+        char c = candidate.charAt(depth - 1);
+        row[0] = depth;
+        int rowMinimum = depth;
+        for (int j = 1; j < row.length; j++) {
+            char q = query.charAt(j - 1);
+            int value = Math.min(Math.min(above[j], row[j - 1]) + 1, above[j - 1] + (q == c ? 0 : 1));
+            if (depth > 1 && j > 1 && q == candidate.charAt(depth - 2) && query.charAt(j - 2) == c) {
+                value = Math.min(value, rows[depth - 2][j - 2] + 1);
+            }
+            row[j] = value;
+            rowMinimum = Math.min(rowMinimum, value);
+        }
+        return rowMinimum;
+    }
+
+    private static int commonPrefixLength(String a, String b, int limit) {
+        int length = Math.min(limit, Math.min(a.length(), b.length()));
+        for (int i = 0; i < length; i++) {
+            if (a.charAt(i) != b.charAt(i)) return i;
+        }
+        return length;
+    }
+
+    /**
+     * @return the index of the first name after {@code start} that doesn't begin with the first {@code length}
+     * characters of {@code prefixSource}
+     */
+    private int skipPrefix(int start, String prefixSource, int length) {
+        int low = start + 1;
+        int high = names.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (names[middle].regionMatches(0, prefixSource, 0, length)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Find every card with a name that begins with the given text.
+     *
+     * @param limit the most names to return
+     * @return cards by normalized name, in name order
+     */
+    public ImmutableMap<String, Card> searchPrefix(String prefix, int limit) {
+        String normalized = CardNames.normalize(prefix);
+        int start = Arrays.binarySearch(names, normalized);
+        if (start < 0) {
+            start = -start - 1;
+        }
+        ImmutableMap.Builder<String, Card> results = ImmutableMap.builder();
+        for (int i = start, count = 0; i < names.length && count < limit && names[i].startsWith(normalized); i++) {
+            results.put(names[i], cards[i]);
+            count++;
+        }
+        return results.build();
+    }
+
+    /**
+     * @param matches matches ranked as by {@link #search}
+     * @return the closest match, if no other card is as close
+     */
+    public static Optional<Match> getUniqueBest(List<Match> matches) {
+        if (matches.isEmpty()) return Optional.empty();
+        Match best = matches.get(0);
+        if (matches.size() > 1 && matches.get(1).getDistance() == best.getDistance()) return Optional.empty();
+        return Optional.of(best);
+    }
+}
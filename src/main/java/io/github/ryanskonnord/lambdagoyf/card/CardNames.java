@@ -19,15 +19,23 @@
 
 package io.github.ryanskonnord.lambdagoyf.card;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.Maps;
+import io.github.ryanskonnord.lambdagoyf.scryfall.ScryfallParser;
 import io.github.ryanskonnord.util.MapCollectors;
 
+import java.nio.file.Path;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class CardNames {
     private static final ImmutableMap<Character, String> LATIN_CHARACTERS = ImmutableSetMultimap
@@ -46,7 +54,142 @@ public class CardNames {
                     .unique().toImmutableMap());
     private static final Pattern COMPOUND_NAME_PATTERN = Pattern.compile("(?<first>.*?)\\s*/+\\s*(?<second>.*?)");
 
+    private static final char LATIN_MIN = '\u00e0';
+    private static final char LATIN_MAX = '\u00fc';
+    private static final String[] LATIN_REPLACEMENTS = new String[LATIN_MAX - LATIN_MIN + 1];
+
+    static {
+        LATIN_CHARACTERS.forEach((c, s) -> LATIN_REPLACEMENTS[c - LATIN_MIN] = s);
+    }
+
+    /**
+     * Languages whose lower-case mapping of ASCII letters differs from the root locale's, such as the dotless i.
+     */
+    private static final ImmutableSet<String> ASCII_CASE_SENSITIVE_LANGUAGES = ImmutableSet.of("tr", "az");
+
+    private static final Cache<String, String> CACHE = CacheBuilder.newBuilder().maximumSize(1 << 12).build();
+
+    /**
+     * Normalize a name for case- and accent-insensitive lookup. Compound names are rewritten with a spaced double
+     * slash, the name is lower-cased in the default locale and accented Latin letters lose their accents.
+     * <p>
+     * A name that is already normalized is returned as is, and an ASCII name is converted in a single pass. Other names
+     * go through {@link String#toLowerCase()}, and their results are cached so that a localized name that appears in
+     * many deck lists or lookups is converted only once.
+     */
     public static String normalize(String name) {
+        int length = name.length();
+        int firstSlash = -1;
+        boolean isAscii = true;
+        boolean hasUpperCase = false;
+        for (int i = 0; i < length; i++) {
+            char c = name.charAt(i);
+            if (c >= 0x80) {
+                isAscii = false;
+            } else if (c >= 'A' && c <= 'Z') {
+                hasUpperCase = true;
+            } else if (c == '/' && firstSlash < 0) {
+                firstSlash = i;
+            }
+        }
+        if (isAscii && !hasUpperCase && firstSlash < 0) {
+            return name;
+        }
+        if (firstSlash >= 0 && hasLineTerminator(name)) {
+            // The compound name pattern won't match across lines, so defer to it
+            return normalizeWithPattern(name);
+        }
+        if (isAscii && !ASCII_CASE_SENSITIVE_LANGUAGES.contains(Locale.getDefault().getLanguage())) {
+            return normalizeAscii(name, firstSlash);
+        }
+        String cached = CACHE.getIfPresent(name);
+        if (cached != null) {
+            return cached;
+        }
+        String compound = firstSlash < 0 ? name : new String(rewriteCompoundName(name, firstSlash, false));
+        String normalized = removeAccents(compound.toLowerCase());
+        CACHE.put(name, normalized);
+        return normalized;
+    }
+
+    private static String normalizeAscii(String name, int firstSlash) {
+        if (firstSlash >= 0) {
+            return new String(rewriteCompoundName(name, firstSlash, true));
+        }
+        char[] chars = new char[name.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = toLowerCaseAscii(name.charAt(i));
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Replace the slashes around the first slash, and any whitespace around them, with {@code " // "}. This is what
+     * {@link #COMPOUND_NAME_PATTERN} does with a single-line name.
+     */
+    private static char[] rewriteCompoundName(String name, int firstSlash, boolean lowerCaseAscii) {
+        int firstEnd = firstSlash;
+        while (firstEnd > 0 && isPatternWhitespace(name.charAt(firstEnd - 1))) firstEnd--;
+        int secondStart = firstSlash;
+        while (secondStart < name.length() && name.charAt(secondStart) == '/') secondStart++;
+        while (secondStart < name.length() && isPatternWhitespace(name.charAt(secondStart))) secondStart++;
+
+        char[] chars = new char[firstEnd + 4 + name.length() - secondStart];
+        int position = 0;
+        for (int i = 0; i < firstEnd; i++) {
+            char c = name.charAt(i);
+            chars[position++] = lowerCaseAscii ? toLowerCaseAscii(c) : c;
+        }
+        chars[position++] = ' ';
+        chars[position++] = '/';
+        chars[position++] = '/';
+        chars[position++] = ' ';
+        for (int i = secondStart; i < name.length(); i++) {
+            char c = name.charAt(i);
+            chars[position++] = lowerCaseAscii ? toLowerCaseAscii(c) : c;
+        }
+        return chars;
+    }
+
+    private static String removeAccents(String name) {
+        StringBuilder builder = null;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            String replacement = (c >= LATIN_MIN && c <= LATIN_MAX) ? LATIN_REPLACEMENTS[c - LATIN_MIN] : null;
+            if (replacement != null && builder == null) {
+                builder = new StringBuilder(name.length() + 4).append(name, 0, i);
+            }
+            if (builder != null) {
+                if (replacement != null) {
+                    builder.append(replacement);
+                } else {
+                    builder.append(c);
+                }
+            }
+        }
+        return builder == null ? name : builder.toString();
+    }
+
+    private static char toLowerCaseAscii(char c) {
+        return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static boolean isPatternWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000b' || c == '\f' || c == '\r';
+    }
+
+    private static boolean hasLineTerminator(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') return true;
+        }
+        return false;
+    }
+
+    /**
+     * The original implementation of {@link #normalize}, kept as the reference that it must agree with.
+     */
+    static String normalizeWithPattern(String name) {
         Matcher matcher = COMPOUND_NAME_PATTERN.matcher(name);
         if (matcher.matches()) {
             name = matcher.group("first") + " // " + matcher.group("second");
@@ -61,4 +204,44 @@ public class CardNames {
     public static <V> Map.Entry<String, V> normalizeMapEntry(Map.Entry<String, ? extends V> entry) {
         return Maps.immutableEntry(normalize(entry.getKey()), entry.getValue());
     }
+
+    /**
+     * Every name that a spoiler normalizes as it builds its indexes, plus upper-case, spaced and unspaced variants.
+     */
+    static Stream<String> getNamesToCheck(Spoiler spoiler) {
+        Stream<String> names = Stream.of(
+                spoiler.getCards().stream().map(Card::getFullName),
+                spoiler.getCards().stream().flatMap(c -> c.getFaces().stream()).map(CardFace::getName),
+                spoiler.getCards().stream().flatMap(Card::getAllNames),
+                spoiler.getExpansions().stream().map(Expansion::getName),
+                spoiler.getExpansions().stream().flatMap(e -> e.getMtgoCode().stream())
+        ).flatMap(s -> s).distinct();
+        return names.flatMap(name -> Stream.of(name, name.toUpperCase(), name.replace(" // ", "/"),
+                name.replace(" // ", "  ///  "), " " + name + " "));
+    }
+
+    /**
+     * Check that {@link #normalize} agrees with the original implementation for every name in a spoiler.
+     *
+     * @param args optionally, a directory of Scryfall data to read instead of the default
+     */
+    public static void main(String[] args) throws Exception {
+        Spoiler spoiler = (args.length > 0)
+                ? new ScryfallParser.Builder().build().parseScryfallData(Path.of(args[0])).createSpoiler()
+                : ScryfallParser.createSpoiler();
+        long checked = 0;
+        long mismatches = 0;
+        for (String name : (Iterable<String>) getNamesToCheck(spoiler)::iterator) {
+            String expected = normalizeWithPattern(name);
+            for (int i = 0; i < 2; i++) {
+                String actual = normalize(name);
+                if (!Objects.equals(expected, actual)) {
+                    System.err.println(String.format("Mismatch on %s: expected %s, got %s", name, expected, actual));
+                    mismatches++;
+                }
+                checked++;
+            }
+        }
+        System.out.println(String.format("Checked %d names with %d mismatches", checked, mismatches));
+    }
 }
@@ -108,6 +108,20 @@ public final class Expansion extends ScryfallEntity implements Comparable<Expans
         return getAllNames().anyMatch(n::equalsIgnoreCase);
     }
 
+    /**
+     * @return true if this has the same ID and all the same data as another expansion, which may have been read from
+     * a different drop of set data, including its card count, which grows as a set is spoiled
+     */
+    boolean hasSameData(Expansion that) {
+        return scryfallId.equals(that.scryfallId)
+                && name.equals(that.name)
+                && productCode.equals(that.productCode)
+                && mtgoCode.equals(that.mtgoCode)
+                && releaseDate.equals(that.releaseDate)
+                && type.equals(that.type)
+                && cardCount == that.cardCount;
+    }
+
     @Override
     public int compareTo(Expansion that) {
         if (this == that || this.scryfallId.equals(that.scryfallId)) return 0;
@@ -33,7 +33,22 @@ public final class ExpansionSpoiler {
     private final ImmutableMap<String, Expansion> byCode;
 
     public ExpansionSpoiler(Collection<ScryfallSet> setData) {
-        expansions = setData.stream().map(Expansion::new).sorted().collect(ImmutableSet.toImmutableSet());
+        this(setData, Optional.empty());
+    }
+
+    /**
+     * Create expansions from set data, keeping the instance from a previous spoiler for each expansion that is
+     * unchanged, so that cards referring only to those instances can be carried over from the previous spoiler.
+     */
+    public ExpansionSpoiler(Collection<ScryfallSet> setData, Optional<ExpansionSpoiler> previous) {
+        expansions = setData.stream()
+                .map((ScryfallSet data) -> {
+                    Expansion expansion = new Expansion(data);
+                    return previous.flatMap(p -> p.lookUpByProductCode(expansion.getProductCode()))
+                            .filter(p -> p.hasSameData(expansion))
+                            .orElse(expansion);
+                })
+                .sorted().collect(ImmutableSet.toImmutableSet());
         byCode = expansions.stream().collect(MapCollectors.<Expansion>collecting()
                 .indexing(Expansion::getProductCode)
                 .unique().toImmutableSortedMap(String.CASE_INSENSITIVE_ORDER));
@@ -47,6 +62,13 @@ public final class ExpansionSpoiler {
         return Optional.ofNullable(byCode.get(productCode));
     }
 
+    /**
+     * @return true if the expansion is this spoiler's own instance, not merely one with the same code
+     */
+    boolean containsInstance(Expansion expansion) {
+        return byCode.get(expansion.getProductCode()) == expansion;
+    }
+
     @Override
     public boolean equals(Object o) {
         return this == o || !(o == null || getClass() != o.getClass())
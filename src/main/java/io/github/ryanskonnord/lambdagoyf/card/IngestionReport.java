@@ -0,0 +1,261 @@
+/*
+ * Lambdagoyf: A Software Suite for MTG Hobbyists
+ * https://github.com/RyanSkonnord/lambdagoyf
+ *
+ * Copyright 2024 Ryan Skonnord
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ryanskonnord.lambdagoyf.card;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.ToLongFunction;
+
+/**
+ * How long each stage of turning a bulk data drop into a spoiler took, and how much it allocated.
+ * <p>
+ * CPU time and allocation are summed over every live thread in the JVM while a stage runs, so that work a stage hands
+ * to a parallel stream or fork-join pool is counted. Work done by unrelated threads at the same time is counted too, so
+ * stages that would otherwise run concurrently, such as a spoiler's indexes, are run one at a time while they are
+ * recorded. If the JVM can't measure either figure for threads, it is reported as -1.
+ */
+public final class IngestionReport {
+
+    public static final String FILENAME = "ingestion-report.json";
+
+    private final ImmutableMap<String, String> attributes;
+    private final ImmutableList<Stage> stages;
+
+    private IngestionReport(Map<String, String> attributes, List<Stage> stages) {
+        this.attributes = ImmutableMap.copyOf(attributes);
+        this.stages = ImmutableList.copyOf(stages);
+    }
+
+    public static final class Stage {
+        private final String name;
+        private final long wallNanos;
+        private final long cpuNanos;
+        private final long allocatedBytes;
+        private final long count;
+
+        private Stage(String name, long wallNanos, long cpuNanos, long allocatedBytes, long count) {
+            this.name = Objects.requireNonNull(name);
+            this.wallNanos = wallNanos;
+            this.cpuNanos = cpuNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.count = count;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        public long getCpuNanos() {
+            return cpuNanos;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        /**
+         * @return the number of elements the stage produced, such as entries decoded or names indexed
+         */
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-24s %10.1f ms wall %10.1f ms cpu %10.1f MB alloc %10d elements",
+                    name, wallNanos / 1e6, cpuNanos / 1e6, allocatedBytes / (double) (1 << 20), count);
+        }
+    }
+
+    /**
+     * @return descriptions of the input and options, such as the data file and decoding
+     */
+    public ImmutableMap<String, String> getAttributes() {
+        return attributes;
+    }
+
+    public ImmutableList<Stage> getStages() {
+        return stages;
+    }
+
+    public String toJson() {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("attributes", attributes);
+        json.put("stages", stages);
+        return new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create().toJson(json);
+    }
+
+    /**
+     * Write this report as JSON to {@link #FILENAME} in a data directory.
+     */
+    public void writeTo(Path directory) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(directory.resolve(FILENAME))) {
+            writer.write(toJson());
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        attributes.forEach((key, value) -> builder.append(key).append(": ").append(value).append('\n'));
+        stages.forEach(stage -> builder.append(stage).append('\n'));
+        return builder.toString();
+    }
+
+    @FunctionalInterface
+    public static interface Step<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    /**
+     * Measures stages as they run. A disabled recorder runs them without measuring anything.
+     */
+    public static final class Recorder {
+        private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+        private static final Recorder DISABLED = new Recorder(false);
+
+        private final boolean enabled;
+        private final Map<String, String> attributes = new LinkedHashMap<>();
+        private final List<Stage> stages = new ArrayList<>();
+
+        private Recorder(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Recorder() {
+            this(true);
+        }
+
+        public static Recorder disabled() {
+            return DISABLED;
+        }
+
+        /**
+         * @return whether stages are being measured, in which case they should not run concurrently with each other
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public synchronized Recorder putAttribute(String key, String value) {
+            if (enabled) {
+                attributes.put(key, value);
+            }
+            return this;
+        }
+
+        /**
+         * Run a stage and record its cost.
+         *
+         * @param counter counts the elements in the stage's result
+         */
+        public <T, E extends Exception> T measure(String name, Step<T, E> step, ToLongFunction<? super T> counter)
+                throws E {
+            if (!enabled) {
+                return step.run();
+            }
+            ThreadSample start = ThreadSample.take();
+            long startNanos = System.nanoTime();
+            T result = step.run();
+            long wallNanos = System.nanoTime() - startNanos;
+            ThreadSample end = ThreadSample.take();
+            Stage stage = new Stage(name, wallNanos,
+                    end.sumCpuSince(start), end.sumAllocatedSince(start), counter.applyAsLong(result));
+            synchronized (this) {
+                stages.add(stage);
+            }
+            return result;
+        }
+
+        public synchronized IngestionReport build() {
+            return new IngestionReport(attributes, stages);
+        }
+
+        /**
+         * The cumulative CPU time and allocation of every live thread at one moment.
+         */
+        private static final class ThreadSample {
+            private final Map<Long, Long> cpuNanos = new HashMap<>();
+            private final Map<Long, Long> allocatedBytes = new HashMap<>();
+            private final boolean measuresCpu;
+            private final boolean measuresAllocation;
+
+            private ThreadSample() {
+                measuresCpu = THREADS.isThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled();
+                measuresAllocation = THREADS instanceof com.sun.management.ThreadMXBean
+                        && ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemoryEnabled();
+            }
+
+            static ThreadSample take() {
+                ThreadSample sample = new ThreadSample();
+                long[] threadIds = THREADS.getAllThreadIds();
+                long[] allocated = sample.measuresAllocation
+                        ? ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(threadIds)
+                        : null;
+                for (int i = 0; i < threadIds.length; i++) {
+                    if (sample.measuresCpu) {
+                        sample.cpuNanos.put(threadIds[i], THREADS.getThreadCpuTime(threadIds[i]));
+                    }
+                    if (allocated != null) {
+                        sample.allocatedBytes.put(threadIds[i], allocated[i]);
+                    }
+                }
+                return sample;
+            }
+
+            long sumCpuSince(ThreadSample start) {
+                return measuresCpu ? sumSince(cpuNanos, start.cpuNanos) : -1;
+            }
+
+            long sumAllocatedSince(ThreadSample start) {
+                return measuresAllocation ? sumSince(allocatedBytes, start.allocatedBytes) : -1;
+            }
+
+            private static long sumSince(Map<Long, Long> end, Map<Long, Long> start) {
+                long sum = 0;
+                for (Map.Entry<Long, Long> entry : end.entrySet()) {
+                    // A thread that ended before it could be sampled reports -1; one that started since counts from 0
+                    if (entry.getValue() < 0) continue;
+                    long before = start.getOrDefault(entry.getKey(), 0L);
+                    sum += entry.getValue() - Math.max(before, 0L);
+                }
+                return sum;
+            }
+        }
+    }
+}
@@ -60,7 +60,13 @@ public final class LocalizedSpoiler {
     }
 
     public static Optional<LocalizedSpoiler> create(Spoiler spoiler, Language language) {
-        Collection<Card> cards = spoiler.getCards();
+        return create(spoiler, spoiler.getCards(), language);
+    }
+
+    /**
+     * @param cards the spoiler's cards, so that the spoiler itself needn't be read before it is fully constructed
+     */
+    static Optional<LocalizedSpoiler> create(Spoiler spoiler, Collection<Card> cards, Language language) {
         Map<String, Card> byName = Maps.newHashMapWithExpectedSize(cards.size() * 2);
         SetMultimap<String, Card> collidingNames = HashMultimap.create();
 
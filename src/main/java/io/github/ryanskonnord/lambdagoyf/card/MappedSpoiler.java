@@ -0,0 +1,417 @@
+/*
+ * Lambdagoyf: A Software Suite for MTG Hobbyists
+ * https://github.com/RyanSkonnord/lambdagoyf
+ *
+ * Copyright 2024 Ryan Skonnord
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ryanskonnord.lambdagoyf.card;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import io.github.ryanskonnord.lambdagoyf.scryfall.ScryfallCardEntry;
+import io.github.ryanskonnord.util.MapCollectors;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static io.github.ryanskonnord.lambdagoyf.card.CardNames.normalize;
+
+/**
+ * A read-only card lookup backed by a memory-mapped file, which builds a {@link Card} only when a lookup reaches it.
+ * <p>
+ * The file holds the encoded Scryfall entries of each card, grouped by oracle ID, along with indexes of fixed-width
+ * records that are searched in place. A lookup touches only the index pages it searches and the entries of the card
+ * that it returns, so a short job pays for what it reads, and processes on the same host share the page cache.
+ * <p>
+ * The file is written from a fully built {@link Spoiler}, so lookups resolve exactly as they do there. The encoding
+ * of the entries themselves is left to the caller.
+ */
+public final class MappedSpoiler implements CardLookup {
+
+    private static final int MAGIC = 0x4C474D53;
+    private static final int FORMAT_VERSION = 1;
+    private static final HashFunction NAME_HASH = Hashing.farmHashFingerprint64();
+
+    private static final int SECTION_GROUPS = 0;
+    private static final int SECTION_CARDS = 1;
+    private static final int SECTION_EDITIONS = 2;
+    private static final int SECTION_MTGO_IDS = 3;
+    private static final int SECTION_NAMES = 4;
+    private static final int SECTION_NAME_POOL = 5;
+    private static final int SECTION_EXPANSIONS = 6;
+    private static final int SECTION_EXPANSION_REFS = 7;
+    private static final int SECTION_DATA = 8;
+    private static final int SECTION_COUNT = 9;
+
+    private static final int GROUP_RECORD = Long.BYTES + Integer.BYTES;
+    private static final int UUID_RECORD = 2 * Long.BYTES + Integer.BYTES;
+    private static final int MTGO_ID_RECORD = 3 * Long.BYTES + Integer.BYTES;
+    private static final int NAME_RECORD = Long.BYTES + 2 * Integer.BYTES;
+    private static final int EXPANSION_RECORD = 2 * Long.BYTES + 2 * Integer.BYTES;
+
+    private final ByteBuffer buffer;
+    private final int[] sectionOffsets;
+    private final int[] sectionCounts;
+    private final CardFactory factory;
+    private final Function<ByteBuffer, Collection<ScryfallCardEntry>> entryDecoder;
+    private final Map<Integer, Card> cardCache = new ConcurrentHashMap<>();
+
+    private final ImmutableMap<Expansion, int[]> expansionRanges;
+    private final ImmutableMap<String, Expansion> expansionsByName;
+
+    private MappedSpoiler(ByteBuffer buffer, int[] sectionOffsets, int[] sectionCounts, CardFactory factory,
+                          Function<ByteBuffer, Collection<ScryfallCardEntry>> entryDecoder) {
+        this.buffer = buffer;
+        this.sectionOffsets = sectionOffsets;
+        this.sectionCounts = sectionCounts;
+        this.factory = factory;
+        this.entryDecoder = entryDecoder;
+
+        Map<UUID, Expansion> expansionsById = factory.getExpansions().getAll().stream()
+                .collect(MapCollectors.<Expansion>collecting()
+                        .indexing(Expansion::getScryfallId)
+                        .unique().toImmutableMap());
+        ImmutableMap.Builder<Expansion, int[]> ranges = ImmutableMap.builder();
+        for (int i = 0; i < sectionCounts[SECTION_EXPANSIONS]; i++) {
+            int position = sectionOffsets[SECTION_EXPANSIONS] + i * EXPANSION_RECORD;
+            Expansion expansion = Objects.requireNonNull(expansionsById.get(readUuid(position)));
+            ranges.put(expansion, new int[]{
+                    buffer.getInt(position + 2 * Long.BYTES),
+                    buffer.getInt(position + 2 * Long.BYTES + Integer.BYTES)});
+        }
+        expansionRanges = ranges.build();
+        expansionsByName = Spoiler.buildExpansionNameMap(expansionRanges.keySet());
+    }
+
+    /**
+     * Open a mapped spoiler file.
+     *
+     * @param sourceKey    identifies the data that the file must have been written from
+     * @param factory      supplies the expansions and shared caches for building cards
+     * @param entryDecoder decodes a card's entries from the bytes that were written for it
+     * @return the spoiler, or empty if the file is missing or was written from other data
+     */
+    public static Optional<MappedSpoiler> open(Path file, String sourceKey, CardFactory factory,
+                                               Function<ByteBuffer, Collection<ScryfallCardEntry>> entryDecoder)
+            throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+
+        byte[] expectedKey = sourceKey.getBytes(StandardCharsets.UTF_8);
+        if (buffer.remaining() < 3 * Integer.BYTES
+                || buffer.getInt(0) != MAGIC
+                || buffer.getInt(Integer.BYTES) != FORMAT_VERSION
+                || buffer.getInt(2 * Integer.BYTES) != expectedKey.length) {
+            return Optional.empty();
+        }
+        byte[] key = new byte[expectedKey.length];
+        buffer.get(3 * Integer.BYTES, key);
+        if (!Arrays.equals(key, expectedKey)) {
+            return Optional.empty();
+        }
+
+        int[] sectionOffsets = new int[SECTION_COUNT];
+        int[] sectionCounts = new int[SECTION_COUNT];
+        int position = 3 * Integer.BYTES + key.length;
+        for (int i = 0; i < SECTION_COUNT; i++) {
+            sectionOffsets[i] = buffer.getInt(position);
+            sectionCounts[i] = buffer.getInt(position + Integer.BYTES);
+            position += 2 * Integer.BYTES;
+        }
+        return Optional.of(new MappedSpoiler(buffer, sectionOffsets, sectionCounts, factory, entryDecoder));
+    }
+
+    private UUID readUuid(int position) {
+        return new UUID(buffer.getLong(position), buffer.getLong(position + Long.BYTES));
+    }
+
+    private Card getGroup(int group) {
+        return cardCache.computeIfAbsent(group, (Integer g) -> {
+            int position = sectionOffsets[SECTION_GROUPS] + g * GROUP_RECORD;
+            int offset = sectionOffsets[SECTION_DATA] + (int) buffer.getLong(position);
+            int length = buffer.getInt(position + Long.BYTES);
+            return new Card(factory, entryDecoder.apply(buffer.slice(offset, length)));
+        });
+    }
+
+    /**
+     * @return the position of the UUID record with the given key, or -1 if there is none
+     */
+    private int searchUuidRecords(int section, UUID key) {
+        int low = 0;
+        int high = sectionCounts[section] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int position = sectionOffsets[section] + middle * UUID_RECORD;
+            int comparison = Long.compare(buffer.getLong(position), key.getMostSignificantBits());
+            if (comparison == 0) {
+                comparison = Long.compare(buffer.getLong(position + Long.BYTES), key.getLeastSignificantBits());
+            }
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index of the first record in the section whose leading long is not less than the key
+     */
+    private int lowerBound(int section, int recordSize, long key) {
+        int low = 0;
+        int high = sectionCounts[section];
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (buffer.getLong(sectionOffsets[section] + middle * recordSize) < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private Optional<CardEdition> findEdition(int group, UUID editionId) {
+        return getGroup(group).getEditions().stream()
+                .filter(e -> e.getScryfallId().equals(editionId))
+                .findFirst();
+    }
+
+    @Override
+    public Optional<Card> lookUpCardByUuid(UUID uuid) {
+        int position = searchUuidRecords(SECTION_CARDS, uuid);
+        return position < 0 ? Optional.empty() : Optional.of(getGroup(buffer.getInt(position + 2 * Long.BYTES)));
+    }
+
+    @Override
+    public Optional<CardEdition> lookUpEditionByUuid(UUID uuid) {
+        int position = searchUuidRecords(SECTION_EDITIONS, uuid);
+        return position < 0 ? Optional.empty() : findEdition(buffer.getInt(position + 2 * Long.BYTES), uuid);
+    }
+
+    @Override
+    public Optional<Card> lookUpByName(String name) {
+        byte[] normalized = normalize(name).getBytes(StandardCharsets.UTF_8);
+        long hash = NAME_HASH.hashBytes(normalized).asLong();
+        for (int i = lowerBound(SECTION_NAMES, NAME_RECORD, hash); i < sectionCounts[SECTION_NAMES]; i++) {
+            int position = sectionOffsets[SECTION_NAMES] + i * NAME_RECORD;
+            if (buffer.getLong(position) != hash) break;
+            int poolPosition = sectionOffsets[SECTION_NAME_POOL] + buffer.getInt(position + Long.BYTES);
+            if (buffer.getInt(poolPosition) == normalized.length
+                    && buffer.slice(poolPosition + Integer.BYTES, normalized.length).equals(ByteBuffer.wrap(normalized))) {
+                return Optional.of(getGroup(buffer.getInt(position + Long.BYTES + Integer.BYTES)));
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<MtgoCard> lookUpByMtgoId(long mtgoId) {
+        int index = lowerBound(SECTION_MTGO_IDS, MTGO_ID_RECORD, mtgoId);
+        if (index >= sectionCounts[SECTION_MTGO_IDS]) return Optional.empty();
+        int position = sectionOffsets[SECTION_MTGO_IDS] + index * MTGO_ID_RECORD;
+        if (buffer.getLong(position) != mtgoId) return Optional.empty();
+        UUID editionId = readUuid(position + Long.BYTES);
+        return findEdition(buffer.getInt(position + 3 * Long.BYTES), editionId)
+                .flatMap(edition -> edition.getMtgoCards().filter(c -> c.getMtgoId() == mtgoId).findFirst());
+    }
+
+    @Override
+    public ImmutableSet<CardEdition> getAllFromExpansion(Expansion expansion) {
+        int[] range = expansionRanges.get(expansion);
+        if (range == null) return ImmutableSet.of();
+        ImmutableSet.Builder<CardEdition> editions = ImmutableSet.builderWithExpectedSize(range[1]);
+        for (int i = range[0]; i < range[0] + range[1]; i++) {
+            int position = sectionOffsets[SECTION_EXPANSION_REFS] + i * UUID_RECORD;
+            findEdition(buffer.getInt(position + 2 * Long.BYTES), readUuid(position)).ifPresent(editions::add);
+        }
+        return editions.build();
+    }
+
+    @Override
+    public ImmutableSet<Expansion> getExpansions() {
+        return expansionRanges.keySet();
+    }
+
+    @Override
+    public Optional<Expansion> getExpansion(String name) {
+        return Optional.ofNullable(expansionsByName.get(normalize(name)));
+    }
+
+
+    private static final Comparator<UUID> UUID_RECORD_ORDER = Comparator
+            .comparingLong(UUID::getMostSignificantBits)
+            .thenComparingLong(UUID::getLeastSignificantBits);
+
+    /**
+     * Write a spoiler to a file that can be opened as a {@code MappedSpoiler}. The file is written to a temporary
+     * location and moved into place when complete.
+     *
+     * @param sourceKey identifies the data that the spoiler was built from
+     * @param entryData the encoded Scryfall entries of a card, which the entry decoder passed to {@link #open} must
+     *                  be able to read back; called twice for each card, and must return the same bytes each time
+     */
+    public static void write(Path file, String sourceKey, Spoiler spoiler, Function<Card, byte[]> entryData)
+            throws IOException {
+        List<Card> cards = new ArrayList<>(spoiler.getCards());
+        Map<UUID, Integer> groups = new HashMap<>();
+        for (int i = 0; i < cards.size(); i++) {
+            groups.put(cards.get(i).getScryfallId(), i);
+        }
+        Function<CardEdition, Integer> groupOfEdition = e -> groups.get(e.getCard().getScryfallId());
+
+        SectionWriter[] sections = new SectionWriter[SECTION_DATA];
+        for (int i = 0; i < sections.length; i++) {
+            sections[i] = new SectionWriter();
+        }
+
+        long dataSize = 0;
+        for (Card card : cards) {
+            int length = entryData.apply(card).length;
+            sections[SECTION_GROUPS].record().writeLong(dataSize);
+            sections[SECTION_GROUPS].out.writeInt(length);
+            dataSize += length;
+        }
+
+        for (Card card : cards.stream().sorted(Comparator.comparing(Card::getScryfallId, UUID_RECORD_ORDER))
+                .toArray(Card[]::new)) {
+            writeUuid(sections[SECTION_CARDS].record(), card.getScryfallId());
+            sections[SECTION_CARDS].out.writeInt(groups.get(card.getScryfallId()));
+        }
+        for (CardEdition edition : cards.stream().flatMap(c -> c.getEditions().stream())
+                .sorted(Comparator.comparing(CardEdition::getScryfallId, UUID_RECORD_ORDER))
+                .toArray(CardEdition[]::new)) {
+            writeUuid(sections[SECTION_EDITIONS].record(), edition.getScryfallId());
+            sections[SECTION_EDITIONS].out.writeInt(groupOfEdition.apply(edition));
+        }
+
+        for (MtgoCard mtgoCard : spoiler.getMtgoIdMap().values().stream()
+                .sorted(Comparator.comparingLong(MtgoCard::getMtgoId)).toArray(MtgoCard[]::new)) {
+            CardEdition edition = mtgoCard.getEdition();
+            sections[SECTION_MTGO_IDS].record().writeLong(mtgoCard.getMtgoId());
+            writeUuid(sections[SECTION_MTGO_IDS].out, edition.getScryfallId());
+            sections[SECTION_MTGO_IDS].out.writeInt(groupOfEdition.apply(edition));
+        }
+
+        List<long[]> nameRecords = new ArrayList<>();
+        for (Map.Entry<String, Card> entry : spoiler.getNameDictionary().entrySet()) {
+            byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            int poolOffset = sections[SECTION_NAME_POOL].out.size();
+            sections[SECTION_NAME_POOL].out.writeInt(name.length);
+            sections[SECTION_NAME_POOL].out.write(name);
+            nameRecords.add(new long[]{NAME_HASH.hashBytes(name).asLong(), poolOffset,
+                    groups.get(entry.getValue().getScryfallId())});
+        }
+        nameRecords.sort(Comparator.comparingLong((long[] r) -> r[0]).thenComparingLong(r -> r[1]));
+        for (long[] record : nameRecords) {
+            sections[SECTION_NAMES].record().writeLong(record[0]);
+            sections[SECTION_NAMES].out.writeInt((int) record[1]);
+            sections[SECTION_NAMES].out.writeInt((int) record[2]);
+        }
+
+        int refCount = 0;
+        for (Expansion expansion : spoiler.getExpansions()) {
+            ImmutableSet<CardEdition> editions = spoiler.getAllFromExpansion(expansion);
+            writeUuid(sections[SECTION_EXPANSIONS].record(), expansion.getScryfallId());
+            sections[SECTION_EXPANSIONS].out.writeInt(refCount);
+            sections[SECTION_EXPANSIONS].out.writeInt(editions.size());
+            for (CardEdition edition : editions) {
+                writeUuid(sections[SECTION_EXPANSION_REFS].record(), edition.getScryfallId());
+                sections[SECTION_EXPANSION_REFS].out.writeInt(groupOfEdition.apply(edition));
+            }
+            refCount += editions.size();
+        }
+
+        byte[] key = sourceKey.getBytes(StandardCharsets.UTF_8);
+        long offset = 3 * Integer.BYTES + key.length + SECTION_COUNT * 2 * Integer.BYTES;
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(key.length);
+            out.write(key);
+            for (SectionWriter section : sections) {
+                out.writeInt((int) offset);
+                out.writeInt(section.count);
+                offset += section.bytes.size();
+            }
+            if (offset + dataSize > Integer.MAX_VALUE) {
+                throw new IOException("Spoiler is too large to map");
+            }
+            out.writeInt((int) offset);
+            out.writeInt(cards.size());
+
+            for (SectionWriter section : sections) {
+                section.bytes.writeTo(out);
+            }
+            for (Card card : cards) {
+                out.write(entryData.apply(card));
+            }
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static final class SectionWriter {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private int count = 0;
+
+        /**
+         * Start a new fixed-width record.
+         */
+        DataOutputStream record() {
+            count++;
+            return out;
+        }
+    }
+}
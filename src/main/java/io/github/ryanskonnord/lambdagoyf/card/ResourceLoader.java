@@ -21,6 +21,10 @@ package io.github.ryanskonnord.lambdagoyf.card;
 
 import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
 import org.yaml.snakeyaml.Yaml;
 
 import java.io.BufferedReader;
@@ -54,6 +58,22 @@ final class ResourceLoader {
         return resourceNames.build();
     }
 
+    /**
+     * @return a hash of the names and contents of the resources under a root
+     */
+    public static HashCode hashResources(String root) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        for (String resourceName : getResourceNames(root)) {
+            hasher.putString(resourceName, Charsets.UTF_8);
+            try (InputStream stream = openResource(resourceName)) {
+                hasher.putBytes(ByteStreams.toByteArray(stream));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return hasher.hash();
+    }
+
     public static Object readYamlResource(String resourceName) {
         try (InputStream stream = openResource(resourceName);
              Reader reader = new BufferedReader(new InputStreamReader(stream, Charsets.UTF_8))) {
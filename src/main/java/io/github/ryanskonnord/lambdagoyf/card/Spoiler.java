@@ -19,9 +19,11 @@
 
 package io.github.ryanskonnord.lambdagoyf.card;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableBiMap;
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
@@ -33,9 +35,12 @@ import com.google.common.collect.Multimap;
 import com.google.common.collect.MultimapBuilder;
 import com.google.common.collect.Multimaps;
 import com.google.common.collect.SetMultimap;
+import com.google.common.util.concurrent.MoreExecutors;
 import io.github.ryanskonnord.lambdagoyf.card.field.ExpansionType;
 import io.github.ryanskonnord.lambdagoyf.card.field.Language;
 import io.github.ryanskonnord.lambdagoyf.deck.ArenaDeckEntry;
+import io.github.ryanskonnord.lambdagoyf.deck.ArenaVersionId;
+import io.github.ryanskonnord.lambdagoyf.diagnostics.SpoilerIndexEvent;
 import io.github.ryanskonnord.util.MapCollectors;
 
 import java.util.ArrayList;
@@ -48,15 +53,30 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static io.github.ryanskonnord.lambdagoyf.card.CardNames.normalize;
 
-public final class Spoiler {
+public final class Spoiler implements CardLookup {
 
-    private static <E extends ScryfallEntity> ImmutableMap<UUID, E> checkScryfallIdUniqueness(Stream<? extends E> elements) {
+    static <E extends ScryfallEntity> ImmutableMap<UUID, E> checkScryfallIdUniqueness(Stream<? extends E> elements) {
+        return checkScryfallIdUniqueness(elements, System.err::println);
+    }
+
+    /**
+     * @param diagnostics receives a message for each ID collision
+     */
+    static <E extends ScryfallEntity> ImmutableMap<UUID, E> checkScryfallIdUniqueness(Stream<? extends E> elements,
+                                                                                      Consumer<String> diagnostics) {
         ListMultimap<UUID, E> groups = elements.collect(MapCollectors.<E>collecting()
                 .indexing(ScryfallEntity::getScryfallId)
                 .grouping().toImmutableListMultimap());
@@ -65,7 +85,7 @@ public final class Spoiler {
         for (Map.Entry<UUID, List<E>> entry : entries) {
             List<E> group = entry.getValue();
             if (group.size() > 1) {
-                System.err.println(String.format(
+                diagnostics.accept(String.format(
                         "Scryfall ID collision on %s: %s",
                         entry.getKey(), group));
             }
@@ -78,39 +98,128 @@ public final class Spoiler {
     private final ImmutableMap<UUID, Card> cards;
     private final ImmutableMap<UUID, CardEdition> editions;
     private final ImmutableMap<String, Card> byName;
+    private final CardNameIndex nameIndex;
     private final ImmutableBiMap<Long, MtgoCard> byMtgoId;
     private final ImmutableMap<Language, LocalizedSpoiler> localizedSpoilers;
     private final ImmutableSetMultimap<Expansion, CardEdition> byExpansion;
+    private final ImmutableMap<Expansion, ImmutableListMultimap<CollectorNumber, CardEdition>> byCollectorNumber;
+    private final ImmutableListMultimap<ArenaVersionId, ArenaCard> byArenaVersion;
     private final ImmutableMap<String, Expansion> expansionsByName;
 
     Spoiler(Collection<Card> cards) {
-        this.cards = checkScryfallIdUniqueness(cards.stream());
-
-        editions = checkScryfallIdUniqueness(this.cards.values().stream()
-                .flatMap(c -> c.getEditions().stream()));
-
-        byName = buildNameDictionary(this.cards.values());
+        this(cards, IngestionReport.Recorder.disabled(), ForkJoinPool.commonPool());
+    }
 
-        byMtgoId = buildMtgoIdMap(this.cards.values());
+    /**
+     * Index a collection of cards. The cards are indexed by ID first, on the calling thread; the other indexes are
+     * then built from them as concurrent tasks on an executor. Collisions found while building any index are printed
+     * in the same order as if the indexes were built one at a time.
+     * <p>
+     * While the recorder is enabled, the indexes are built one at a time on the calling thread instead, because the
+     * recorder can only attribute CPU time and allocation to a stage when no other stage is running.
+     *
+     * @param executor runs the index tasks; a direct executor builds the indexes one at a time on the calling thread
+     */
+    Spoiler(Collection<Card> cards, IngestionReport.Recorder recorder, Executor executor) {
+        this(cards, Optional.empty(), recorder, executor);
+    }
 
-        localizedSpoilers = EnumSet.allOf(Language.class).parallelStream()
-                .map(language -> LocalizedSpoiler.create(Spoiler.this, language))
-                .flatMap(Optional::stream)
-                .collect(MapCollectors.<LocalizedSpoiler>collecting()
-                        .indexing(LocalizedSpoiler::getLanguage)
-                        .unique().toImmutableMap());
+    /**
+     * @param nameDictionary a name dictionary that was already built from the same cards, as by
+     *                       {@link #getNameDictionary}
+     */
+    Spoiler(Collection<Card> cards, Optional<ImmutableMap<String, Card>> nameDictionary,
+            IngestionReport.Recorder recorder, Executor executor) {
+        if (recorder.isEnabled()) {
+            executor = MoreExecutors.directExecutor();
+        }
+        this.cards = buildIndex(recorder, "index cards",
+                () -> checkScryfallIdUniqueness(cards.stream()), Map::size);
+        Collection<Card> indexedCards = this.cards.values();
+
+        List<String> editionCollisions = new ArrayList<>();
+        CompletableFuture<ImmutableMap<UUID, CardEdition>> editionsTask = CompletableFuture.supplyAsync(
+                () -> buildIndex(recorder, "index editions",
+                        () -> checkScryfallIdUniqueness(indexedCards.stream().flatMap(c -> c.getEditions().stream()),
+                                editionCollisions::add),
+                        Map::size),
+                executor);
+        CompletableFuture<ImmutableMap<String, Card>> byNameTask = nameDictionary.isPresent()
+                ? CompletableFuture.completedFuture(nameDictionary.get())
+                : CompletableFuture.supplyAsync(() -> buildIndex(recorder, "name dictionary",
+                        () -> buildNameDictionary(indexedCards), Map::size), executor);
+        CompletableFuture<CardNameIndex> nameIndexTask = byNameTask.thenApplyAsync(
+                (ImmutableMap<String, Card> names) -> buildIndex(recorder, "name index",
+                        () -> CardNameIndex.create(names), CardNameIndex::size),
+                executor);
+        List<String> mtgoIdCollisions = new ArrayList<>();
+        CompletableFuture<ImmutableBiMap<Long, MtgoCard>> byMtgoIdTask = CompletableFuture.supplyAsync(
+                () -> buildIndex(recorder, "MTGO IDs",
+                        () -> buildMtgoIdMap(indexedCards, mtgoIdCollisions::add), Map::size),
+                executor);
+        // Localized spoilers keep a reference to this spoiler, but don't read from it while they are built
+        CompletableFuture<ImmutableMap<Language, LocalizedSpoiler>> localizedTask = CompletableFuture.supplyAsync(
+                () -> buildIndex(recorder, "localized spoilers",
+                        () -> buildLocalizedSpoilers(this, indexedCards), Map::size),
+                executor);
+        CompletableFuture<ImmutableSetMultimap<Expansion, CardEdition>> byExpansionTask = CompletableFuture.supplyAsync(
+                () -> buildIndex(recorder, "editions by expansion",
+                        () -> buildExpansionIndex(indexedCards), Multimap::size),
+                executor);
+        CompletableFuture<ImmutableMap<Expansion, ImmutableListMultimap<CollectorNumber, CardEdition>>>
+                byCollectorNumberTask = byExpansionTask.thenApplyAsync(
+                (ImmutableSetMultimap<Expansion, CardEdition> index) -> buildIndex(recorder, "collector numbers",
+                        () -> buildCollectorNumberIndex(index), Map::size),
+                executor);
+        CompletableFuture<ImmutableListMultimap<ArenaVersionId, ArenaCard>> byArenaVersionTask =
+                CompletableFuture.supplyAsync(() -> buildIndex(recorder, "Arena versions",
+                        () -> buildArenaVersionIndex(indexedCards), Multimap::size),
+                        executor);
+        CompletableFuture<ImmutableMap<String, Expansion>> expansionsByNameTask = byExpansionTask.thenApplyAsync(
+                (ImmutableSetMultimap<Expansion, CardEdition> index) -> buildIndex(recorder, "expansion names",
+                        () -> buildExpansionNameMap(index.keySet()), Map::size),
+                executor);
+
+        editions = join(editionsTask);
+        editionCollisions.forEach(System.err::println);
+        byName = join(byNameTask);
+        nameIndex = join(nameIndexTask);
+        byMtgoId = join(byMtgoIdTask);
+        mtgoIdCollisions.forEach(System.err::println);
+        localizedSpoilers = join(localizedTask);
+        byExpansion = join(byExpansionTask);
+        byCollectorNumber = join(byCollectorNumberTask);
+        byArenaVersion = join(byArenaVersionTask);
+        expansionsByName = join(expansionsByNameTask);
+    }
 
-        byExpansion = this.cards.values().stream()
-                .flatMap((Card c) -> c.getEditions().stream())
-                .sorted()
-                .collect(MapCollectors.<CardEdition>collecting()
-                        .indexing(CardEdition::getExpansion)
-                        .grouping().toImmutableSetMultimap());
+    /**
+     * Wait for an index task, throwing whatever it threw.
+     */
+    private static <T> T join(CompletableFuture<T> task) {
+        try {
+            return task.join();
+        } catch (CompletionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        }
+    }
 
-        expansionsByName = buildExpansionNameMap(byExpansion.keySet());
+    private static <T> T buildIndex(IngestionReport.Recorder recorder, String name,
+                                    Supplier<T> builder, ToLongFunction<? super T> size) {
+        SpoilerIndexEvent event = new SpoilerIndexEvent();
+        event.begin();
+        T index = recorder.measure(name, builder::get, size);
+        event.end();
+        if (event.shouldCommit()) {
+            event.index = name;
+            event.size = size.applyAsLong(index);
+            event.commit();
+        }
+        return index;
     }
 
-    private static ImmutableMap<String, Card> buildNameDictionary(Collection<Card> cards) {
+    static ImmutableMap<String, Card> buildNameDictionary(Collection<Card> cards) {
         Map<String, Card> names = Maps.newHashMapWithExpectedSize(9 * cards.size());
         SetMultimap<String, Card> byPrintedName = MultimapBuilder.hashKeys(8 * cards.size()).hashSetValues(2).build();
 
@@ -170,7 +279,53 @@ public final class Spoiler {
         return cards.stream().min(Comparator.naturalOrder()).orElseThrow(IllegalArgumentException::new);
     }
 
-    private static ImmutableBiMap<Long, MtgoCard> buildMtgoIdMap(Collection<Card> cards) {
+    static ImmutableMap<Language, LocalizedSpoiler> buildLocalizedSpoilers(Spoiler spoiler, Collection<Card> cards) {
+        return EnumSet.allOf(Language.class).parallelStream()
+                .map(language -> LocalizedSpoiler.create(spoiler, cards, language))
+                .flatMap(Optional::stream)
+                .collect(MapCollectors.<LocalizedSpoiler>collecting()
+                        .indexing(LocalizedSpoiler::getLanguage)
+                        .unique().toImmutableMap());
+    }
+
+    static ImmutableSetMultimap<Expansion, CardEdition> buildExpansionIndex(Collection<Card> cards) {
+        return cards.stream()
+                .flatMap((Card c) -> c.getEditions().stream())
+                .sorted()
+                .collect(MapCollectors.<CardEdition>collecting()
+                        .indexing(CardEdition::getExpansion)
+                        .grouping().toImmutableSetMultimap());
+    }
+
+    /**
+     * Index each expansion's editions by collector number. A number may have more than one edition, such as when the
+     * spoiler has printings in several languages.
+     */
+    static ImmutableMap<Expansion, ImmutableListMultimap<CollectorNumber, CardEdition>> buildCollectorNumberIndex(
+            ImmutableSetMultimap<Expansion, CardEdition> byExpansion) {
+        return Multimaps.asMap(byExpansion).entrySet().stream()
+                .collect(ImmutableMap.toImmutableMap(Map.Entry::getKey,
+                        (Map.Entry<Expansion, Set<CardEdition>> entry) -> entry.getValue().stream()
+                                .collect(ImmutableListMultimap.toImmutableListMultimap(
+                                        CardEdition::getCollectorNumber, Function.identity()))));
+    }
+
+    static ImmutableListMultimap<ArenaVersionId, ArenaCard> buildArenaVersionIndex(Collection<Card> cards) {
+        return cards.stream()
+                .flatMap((Card c) -> c.getEditions().stream())
+                .map(CardEdition::getArenaCard)
+                .flatMap(Optional::stream)
+                .collect(ImmutableListMultimap.toImmutableListMultimap(ArenaCard::getVersionId, Function.identity()));
+    }
+
+    static ImmutableBiMap<Long, MtgoCard> buildMtgoIdMap(Collection<Card> cards) {
+        return buildMtgoIdMap(cards, System.err::println);
+    }
+
+    /**
+     * @param diagnostics receives a message for each MTGO ID collision
+     */
+    static ImmutableBiMap<Long, MtgoCard> buildMtgoIdMap(Collection<Card> cards, Consumer<String> diagnostics) {
         Map<Long, MtgoCard> map = new LinkedHashMap<>();
         cards.stream()
                 .flatMap((Card c) -> c.getEditions().stream())
@@ -181,14 +336,14 @@ public final class Spoiler {
                     if (previous == null) {
                         map.put(id, mtgoCard);
                     } else {
-                        System.err.printf("MTGO ID collision on: %s; %s%n", previous, mtgoCard);
+                        diagnostics.accept(String.format("MTGO ID collision on: %s; %s", previous, mtgoCard));
                     }
                 });
         return ImmutableBiMap.copyOf(map);
     }
 
 
-    private static ImmutableMap<String, Expansion> buildExpansionNameMap(Set<Expansion> expansions) {
+    static ImmutableMap<String, Expansion> buildExpansionNameMap(Set<Expansion> expansions) {
         Map<String, Expansion> byName = new LinkedHashMap<>((int) (expansions.size() * 2.75));
         List<Expansion> orderedExpansions = expansions.stream().sorted().collect(ImmutableList.toImmutableList());
 
@@ -233,45 +388,70 @@ public final class Spoiler {
         return cards.values();
     }
 
+    ImmutableMap<String, Card> getNameDictionary() {
+        return byName;
+    }
+
+    ImmutableBiMap<Long, MtgoCard> getMtgoIdMap() {
+        return byMtgoId;
+    }
+
+    @Override
     public Optional<Card> lookUpCardByUuid(UUID uuid) {
         return Optional.ofNullable(cards.get(uuid));
     }
 
+    @Override
     public Optional<CardEdition> lookUpEditionByUuid(UUID uuid) {
         return Optional.ofNullable(editions.get(uuid));
     }
 
+    @Override
     public Optional<Card> lookUpByName(String name) {
         return Optional.ofNullable(byName.get(normalize(name)));
     }
 
-    public Optional<MtgoCard> lookUpByMtgoId(long mtgoId) {
-        return Optional.ofNullable(byMtgoId.get(mtgoId));
+    @Override
+    public Optional<CardNameIndex> getNameIndex() {
+        return Optional.of(nameIndex);
     }
 
-    public Optional<ArenaCard> lookUpByArenaDeckEntry(ArenaDeckEntry entry) {
-        return lookUpByName(entry.getCardName()).flatMap((Card card) ->
-                card.getEditions().stream()
-                        .map(CardEdition::getArenaCard)
-                        .flatMap(Optional::stream)
-                        .filter(arenaCard -> arenaCard.getDeckEntry().equals(entry))
-                        .collect(MoreCollectors.toOptional()));
+    @Override
+    public Optional<MtgoCard> lookUpByMtgoId(long mtgoId) {
+        return Optional.ofNullable(byMtgoId.get(mtgoId));
     }
 
+    @Override
     public ImmutableSet<CardEdition> getAllFromExpansion(Expansion expansion) {
         return byExpansion.get(expansion);
     }
 
+    @Override
     public Optional<CardEdition> getByCollectorNumber(Expansion expansion, CollectorNumber number) {
-        return getAllFromExpansion(expansion).stream()
-                .filter(e -> e.getCollectorNumber().equals(number))
+        ImmutableListMultimap<CollectorNumber, CardEdition> numbers = byCollectorNumber.get(expansion);
+        return numbers == null ? Optional.empty() : numbers.get(number).stream().collect(MoreCollectors.toOptional());
+    }
+
+    @Override
+    public Optional<ArenaCard> lookUpByArenaDeckEntry(ArenaDeckEntry entry) {
+        if (entry.getVersionId().isEmpty()) {
+            return CardLookup.super.lookUpByArenaDeckEntry(entry);
+        }
+        Optional<Card> card = lookUpByName(entry.getCardName());
+        if (card.isEmpty()) {
+            return Optional.empty();
+        }
+        return byArenaVersion.get(entry.getVersionId().get()).stream()
+                .filter(arenaCard -> arenaCard.getCard().equals(card.get()) && arenaCard.getDeckEntry().equals(entry))
                 .collect(MoreCollectors.toOptional());
     }
 
+    @Override
     public ImmutableSet<Expansion> getExpansions() {
         return byExpansion.keySet();
     }
 
+    @Override
     public Optional<Expansion> getExpansion(String name) {
         return Optional.ofNullable(expansionsByName.get(normalize(name)));
     }
@@ -0,0 +1,70 @@
+/*
+ * Lambdagoyf: A Software Suite for MTG Hobbyists
+ * https://github.com/RyanSkonnord/lambdagoyf
+ *
+ * Copyright 2024 Ryan Skonnord
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ryanskonnord.lambdagoyf.card;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.HashCode;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * A spoiler together with a content hash of the Scryfall entries behind each of its cards, so that a spoiler for a
+ * later bulk data drop can be built from it by reconstructing only the cards whose entries changed.
+ *
+ * @see CardFactory#createSpoilerRevision
+ */
+public final class SpoilerRevision {
+
+    private final Spoiler spoiler;
+    private final ExpansionSpoiler expansions;
+    private final ImmutableMap<UUID, HashCode> groupHashes;
+    private final int rebuiltCardCount;
+
+    SpoilerRevision(Spoiler spoiler, ExpansionSpoiler expansions, ImmutableMap<UUID, HashCode> groupHashes,
+                    int rebuiltCardCount) {
+        this.spoiler = Objects.requireNonNull(spoiler);
+        this.expansions = Objects.requireNonNull(expansions);
+        this.groupHashes = Objects.requireNonNull(groupHashes);
+        this.rebuiltCardCount = rebuiltCardCount;
+    }
+
+    public Spoiler getSpoiler() {
+        return spoiler;
+    }
+
+    /**
+     * @return the expansions that this revision's cards refer to
+     */
+    public ExpansionSpoiler getExpansions() {
+        return expansions;
+    }
+
+    HashCode getGroupHash(UUID oracleId) {
+        return groupHashes.get(oracleId);
+    }
+
+    /**
+     * @return the number of cards that were constructed for this revision rather than reused from the previous one
+     */
+    public int getRebuiltCardCount() {
+        return rebuiltCardCount;
+    }
+}
@@ -0,0 +1,515 @@
+/*
+ * Lambdagoyf: A Software Suite for MTG Hobbyists
+ * https://github.com/RyanSkonnord/lambdagoyf
+ *
+ * Copyright 2024 Ryan Skonnord
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ryanskonnord.lambdagoyf.card;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import io.github.ryanskonnord.lambdagoyf.card.field.CardSupertype;
+import io.github.ryanskonnord.lambdagoyf.card.field.CardType;
+import io.github.ryanskonnord.lambdagoyf.card.field.Finish;
+import io.github.ryanskonnord.lambdagoyf.card.field.Format;
+import io.github.ryanskonnord.lambdagoyf.card.field.Legality;
+import io.github.ryanskonnord.lambdagoyf.deck.ArenaVersionId;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A binary copy of the cards in a built {@link Spoiler}, from which a later run restores the same cards without
+ * decoding or reconciling any Scryfall entries.
+ * <p>
+ * Each card, face and edition writes and reads its own fields. Values that many cards share, such as strings, words,
+ * type lines and legalities, are written once and restored as one shared instance. A snapshot is keyed by the data it
+ * was built from and by a hash of the model's fields and of the ID fixes among the resources, and is ignored if
+ * either has changed. The spoiler's name dictionary is stored along with the cards, and its other indexes are built
+ * again from the restored cards.
+ */
+public final class SpoilerSnapshot {
+    private SpoilerSnapshot() {
+        throw new RuntimeException();
+    }
+
+    public static final String FILENAME = "spoiler-model.bin";
+
+    private static final int MAGIC = 0x4C47534D;
+    private static final int FORMAT_VERSION = 1;
+
+    private static final ImmutableList<Class<?>> MODEL_CLASSES = ImmutableList.of(
+            Card.class, CardFace.class, CardEdition.class, CardEditionFace.class, CardIllustration.class,
+            MtgoCard.class, ArenaCard.class, ArenaVersionId.class, TypeLine.class);
+    private static final long MODEL_HASH = hashModel();
+
+    private static long hashModel() {
+        Hasher hasher = Hashing.sha256().newHasher().putInt(FORMAT_VERSION);
+        for (Class<?> modelClass : MODEL_CLASSES) {
+            Arrays.stream(modelClass.getDeclaredFields())
+                    .filter((Field field) -> (field.getModifiers() & (Modifier.STATIC | Modifier.TRANSIENT)) == 0)
+                    .sorted(Comparator.comparing(Field::getName))
+                    .forEachOrdered((Field field) -> hasher.putString(modelClass.getName() + "." + field.getName()
+                            + ":" + field.getGenericType().getTypeName(), StandardCharsets.UTF_8));
+        }
+        // The fixes are applied while cards are built, so the restored cards would not reflect a change to them
+        hasher.putBytes(ResourceLoader.hashResources("/fix/mtgo").asBytes());
+        hasher.putBytes(ResourceLoader.hashResources("/fix/arena").asBytes());
+        return hasher.hash().asLong();
+    }
+
+    /**
+     * Restore a spoiler from a snapshot, recording the cost of restoring its cards and of building its indexes.
+     *
+     * @param sourceKey  identifies the data that the snapshot must have been written from
+     * @param expansions the expansions that the snapshot's cards belong to
+     * @return the spoiler, or empty if the snapshot is missing, stale or unreadable
+     */
+    public static Optional<Spoiler> read(Path file, String sourceKey, ExpansionSpoiler expansions,
+                                         IngestionReport.Recorder recorder) {
+        Optional<Contents> contents;
+        try {
+            contents = recorder.measure("model snapshot", () -> readContents(file, sourceKey, expansions),
+                    (Optional<Contents> c) -> c.map((Contents value) -> value.cards.size()).orElse(0));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable snapshot " + file + ": " + e);
+            return Optional.empty();
+        }
+        return contents.map((Contents c) -> new Spoiler(c.cards, Optional.of(c.nameDictionary),
+                recorder, ForkJoinPool.commonPool()));
+    }
+
+    private static final class Contents {
+        private final List<Card> cards;
+        private final ImmutableMap<String, Card> nameDictionary;
+
+        private Contents(List<Card> cards, ImmutableMap<String, Card> nameDictionary) {
+            this.cards = cards;
+            this.nameDictionary = nameDictionary;
+        }
+    }
+
+    private static Optional<Contents> readContents(Path file, String sourceKey, ExpansionSpoiler expansions)
+            throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+        byte[] expectedKey = sourceKey.getBytes(StandardCharsets.UTF_8);
+        if (data.remaining() < 20 || data.getInt() != MAGIC || data.getInt() != FORMAT_VERSION
+                || data.getLong() != MODEL_HASH || data.getInt() != expectedKey.length
+                || data.remaining() < expectedKey.length) {
+            return Optional.empty();
+        }
+        byte[] key = new byte[expectedKey.length];
+        data.get(key);
+        if (!Arrays.equals(key, expectedKey)) {
+            return Optional.empty();
+        }
+        Input input = new Input(data, expansions);
+        int count = input.readVarInt();
+        List<Card> cards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            cards.add(new Card(input));
+        }
+        // The dictionary is as costly to build as the cards are to restore, so it is stored too, in its order
+        int nameCount = input.readVarInt();
+        ImmutableMap.Builder<String, Card> nameDictionary = ImmutableMap.builderWithExpectedSize(nameCount);
+        for (int i = 0; i < nameCount; i++) {
+            String name = input.readString();
+            nameDictionary.put(name, cards.get(input.readVarInt()));
+        }
+        if (data.hasRemaining()) {
+            throw new IOException("Unexpected data after the name dictionary");
+        }
+        return Optional.of(new Contents(cards, nameDictionary.build()));
+    }
+
+    /**
+     * Write a snapshot of a spoiler's cards. The snapshot is only a cache, so a failure to write it is reported and
+     * otherwise ignored.
+     *
+     * @param sourceKey identifies the data that the spoiler was built from
+     */
+    public static void write(Path file, String sourceKey, Spoiler spoiler) {
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporaryFile), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(MODEL_HASH);
+                byte[] key = sourceKey.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(key.length);
+                out.write(key);
+                Output output = new Output(out);
+                Map<Card, Integer> cardPositions = new IdentityHashMap<>();
+                output.writeVarInt(spoiler.getCards().size());
+                for (Card card : spoiler.getCards()) {
+                    card.writeTo(output);
+                    cardPositions.put(card, cardPositions.size());
+                }
+                output.writeVarInt(spoiler.getNameDictionary().size());
+                for (Map.Entry<String, Card> entry : spoiler.getNameDictionary().entrySet()) {
+                    output.writeString(entry.getKey());
+                    output.writeVarInt(cardPositions.get(entry.getValue()));
+                }
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not write snapshot " + file + ": " + e);
+            try {
+                Files.deleteIfExists(temporaryFile);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private static interface ContentWriter<T> {
+        void write(T value) throws IOException;
+    }
+
+    @FunctionalInterface
+    private static interface ContentReader<T> {
+        T read() throws IOException;
+    }
+
+    @FunctionalInterface
+    static interface ElementReader<T> {
+        T read(int index) throws IOException;
+    }
+
+    /*
+     * A shared value is written as 0 if it is null, as 1 followed by its contents the first time it appears, and
+     * afterward as 2 plus its position among the values that have appeared before it.
+     */
+
+    /**
+     * Writes the fields of cards, writing each shared value once.
+     */
+    static final class Output {
+        private final DataOutputStream out;
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final Map<Word<?>, Integer> words = new IdentityHashMap<>();
+        private final Map<WordSet<?>, Integer> wordSets = new HashMap<>();
+        private final Map<ColorSet, Integer> colorSets = new HashMap<>();
+        private final Map<TypeLine, Integer> typeLines = new HashMap<>();
+        private final Map<CardLegality, Integer> legalities = new HashMap<>();
+        private final Map<LocalDate, Integer> dates = new HashMap<>();
+        private final Map<ImmutableSet<Finish>, Integer> finishSets = new HashMap<>();
+        private final Map<Expansion, Integer> expansions = new IdentityHashMap<>();
+
+        private Output(DataOutputStream out) {
+            this.out = out;
+        }
+
+        private <T> void writeShared(Map<T, Integer> pool, T value, ContentWriter<T> contents) throws IOException {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            Integer position = pool.get(value);
+            if (position != null) {
+                writeVarInt(position + 2);
+                return;
+            }
+            writeVarInt(1);
+            contents.write(value);
+            pool.put(value, pool.size());
+        }
+
+        void writeVarInt(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+
+        void writeBoolean(boolean value) throws IOException {
+            out.writeBoolean(value);
+        }
+
+        void writeOptionalLong(OptionalLong value) throws IOException {
+            out.writeBoolean(value.isPresent());
+            if (value.isPresent()) {
+                out.writeLong(value.getAsLong());
+            }
+        }
+
+        void writeUuid(UUID value) throws IOException {
+            out.writeLong(value.getMostSignificantBits());
+            out.writeLong(value.getLeastSignificantBits());
+        }
+
+        void writeOptionalUuid(Optional<UUID> value) throws IOException {
+            out.writeBoolean(value.isPresent());
+            if (value.isPresent()) {
+                writeUuid(value.get());
+            }
+        }
+
+        void writeString(String value) throws IOException {
+            writeShared(strings, value, (String s) -> {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(bytes.length);
+                out.write(bytes);
+            });
+        }
+
+        void writeOptionalString(Optional<String> value) throws IOException {
+            writeString(value.orElse(null));
+        }
+
+        void writeWord(Word<?> value) throws IOException {
+            writeShared(words, value, (Word<?> w) -> writeString(w.getKey()));
+        }
+
+        void writeWordSet(WordSet<?> value) throws IOException {
+            writeShared(wordSets, value, (WordSet<?> s) -> {
+                writeVarInt(s.asList().size());
+                for (Word<?> word : s.asList()) {
+                    writeWord(word);
+                }
+            });
+        }
+
+        void writeColorSet(ColorSet value) throws IOException {
+            writeShared(colorSets, value, (ColorSet c) -> writeString(c.getSymbols()));
+        }
+
+        void writeTypeLine(TypeLine value) throws IOException {
+            writeShared(typeLines, value, (TypeLine t) -> {
+                writeWordSet(t.getSupertypes());
+                writeWordSet(t.getCardTypes());
+                writeVarInt(t.getSubtypes().size());
+                for (String subtype : t.getSubtypes()) {
+                    writeString(subtype);
+                }
+            });
+        }
+
+        void writeLegality(CardLegality value) throws IOException {
+            writeShared(legalities, value, (CardLegality l) -> {
+                writeVarInt(l.asMap().size());
+                for (Map.Entry<Word<Format>, Legality> entry : l.asMap().entrySet()) {
+                    writeWord(entry.getKey());
+                    writeString(entry.getValue().name());
+                }
+            });
+        }
+
+        void writeDate(LocalDate value) throws IOException {
+            writeShared(dates, value, (LocalDate d) -> out.writeLong(d.toEpochDay()));
+        }
+
+        void writeFinishes(ImmutableSet<Finish> value) throws IOException {
+            writeShared(finishSets, value, (ImmutableSet<Finish> f) -> {
+                writeVarInt(f.size());
+                for (Finish finish : f) {
+                    writeString(finish.name());
+                }
+            });
+        }
+
+        void writeExpansion(Expansion value) throws IOException {
+            writeShared(expansions, value, (Expansion e) -> writeUuid(e.getScryfallId()));
+        }
+    }
+
+    /**
+     * Reads the fields of cards in the order that {@link Output} wrote them.
+     */
+    static final class Input {
+        private final ByteBuffer data;
+        private final ImmutableMap<UUID, Expansion> expansionsById;
+        private final CardLegality.Factory legalityFactory = new CardLegality.Factory();
+
+        private final List<String> strings = new ArrayList<>();
+        private final List<Word<?>> words = new ArrayList<>();
+        private final List<WordSet<?>> wordSets = new ArrayList<>();
+        private final List<ColorSet> colorSets = new ArrayList<>();
+        private final List<TypeLine> typeLines = new ArrayList<>();
+        private final List<CardLegality> legalities = new ArrayList<>();
+        private final List<LocalDate> dates = new ArrayList<>();
+        private final List<ImmutableSet<Finish>> finishSets = new ArrayList<>();
+        private final List<Expansion> expansions = new ArrayList<>();
+
+        private Input(ByteBuffer data, ExpansionSpoiler expansionSpoiler) {
+            this.data = data;
+            this.expansionsById = expansionSpoiler.getAll().stream()
+                    .collect(ImmutableMap.toImmutableMap(Expansion::getScryfallId, (Expansion e) -> e));
+        }
+
+        private <T> T readShared(List<T> pool, ContentReader<T> contents) throws IOException {
+            int tag = readVarInt();
+            if (tag == 0) return null;
+            if (tag > 1) return pool.get(tag - 2);
+            T value = contents.read();
+            pool.add(value);
+            return value;
+        }
+
+        <T> ImmutableList<T> readList(ElementReader<T> reader) throws IOException {
+            int size = readVarInt();
+            ImmutableList.Builder<T> list = ImmutableList.builderWithExpectedSize(size);
+            for (int index = 0; index < size; index++) {
+                list.add(reader.read(index));
+            }
+            return list.build();
+        }
+
+        int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = Byte.toUnsignedInt(data.get());
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        boolean readBoolean() throws IOException {
+            return data.get() != 0;
+        }
+
+        OptionalLong readOptionalLong() throws IOException {
+            return data.get() != 0 ? OptionalLong.of(data.getLong()) : OptionalLong.empty();
+        }
+
+        UUID readUuid() throws IOException {
+            long mostSignificantBits = data.getLong();
+            return new UUID(mostSignificantBits, data.getLong());
+        }
+
+        Optional<UUID> readOptionalUuid() throws IOException {
+            return data.get() != 0 ? Optional.of(readUuid()) : Optional.empty();
+        }
+
+        String readString() throws IOException {
+            return readShared(strings, () -> {
+                int length = readVarInt();
+                String value = new String(data.array(), data.arrayOffset() + data.position(), length,
+                        StandardCharsets.UTF_8);
+                data.position(data.position() + length);
+                return value;
+            });
+        }
+
+        Optional<String> readOptionalString() throws IOException {
+            return Optional.ofNullable(readString());
+        }
+
+        @SuppressWarnings("unchecked")
+        <E extends Enum<E> & WordType> Word<E> readWord(Class<E> type) throws IOException {
+            return (Word<E>) readShared(words, () -> Word.of(type, readString()));
+        }
+
+        @SuppressWarnings("unchecked")
+        <E extends Enum<E> & WordType> WordSet<E> readWordSet(Class<E> type) throws IOException {
+            return (WordSet<E>) readShared(wordSets, () -> {
+                int size = readVarInt();
+                List<Word<E>> setWords = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    setWords.add(readWord(type));
+                }
+                return WordSet.copyWords(setWords);
+            });
+        }
+
+        ColorSet readColorSet() throws IOException {
+            return readShared(colorSets, () -> ColorSet.fromSymbols(readString()));
+        }
+
+        TypeLine readTypeLine() throws IOException {
+            return readShared(typeLines, () -> {
+                WordSet<CardSupertype> supertypes = readWordSet(CardSupertype.class);
+                WordSet<CardType> cardTypes = readWordSet(CardType.class);
+                int size = readVarInt();
+                List<String> subtypes = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    subtypes.add(readString());
+                }
+                return new TypeLine(supertypes, cardTypes, subtypes);
+            });
+        }
+
+        CardLegality readLegality() throws IOException {
+            return readShared(legalities, () -> {
+                int size = readVarInt();
+                Map<Word<Format>, Legality> map = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++) {
+                    Word<Format> format = readWord(Format.class);
+                    map.put(format, Legality.valueOf(readString()));
+                }
+                return legalityFactory.create(map);
+            });
+        }
+
+        LocalDate readDate() throws IOException {
+            return readShared(dates, () -> LocalDate.ofEpochDay(data.getLong()));
+        }
+
+        ImmutableSet<Finish> readFinishes() throws IOException {
+            return readShared(finishSets, () -> {
+                int size = readVarInt();
+                List<Finish> finishes = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    finishes.add(Finish.valueOf(readString()));
+                }
+                return Sets.immutableEnumSet(finishes);
+            });
+        }
+
+        Expansion readExpansion() throws IOException {
+            return readShared(expansions, () -> {
+                UUID id = readUuid();
+                Expansion expansion = expansionsById.get(id);
+                if (expansion == null) {
+                    throw new IOException("Unknown expansion: " + id);
+                }
+                return expansion;
+            });
+        }
+    }
+}
@@ -27,9 +27,11 @@ import com.google.common.collect.Multisets;
 import io.github.ryanskonnord.lambdagoyf.card.ArenaCard;
 import io.github.ryanskonnord.lambdagoyf.card.Card;
 import io.github.ryanskonnord.lambdagoyf.card.CardEdition;
+import io.github.ryanskonnord.lambdagoyf.card.CardLookup;
 import io.github.ryanskonnord.lambdagoyf.card.ColorSet;
-import io.github.ryanskonnord.lambdagoyf.card.Spoiler;
 import io.github.ryanskonnord.lambdagoyf.card.field.CardType;
+import io.github.ryanskonnord.lambdagoyf.diagnostics.CountingWriter;
+import io.github.ryanskonnord.lambdagoyf.diagnostics.DeckWriteEvent;
 import io.github.ryanskonnord.util.OrderingUtil;
 
 import java.io.BufferedReader;
@@ -123,7 +125,11 @@ public final class ArenaDeckFormatter {
     }
 
     public static void write(Writer writer, Deck<ArenaDeckEntry> deck) {
-        PrintWriter printWriter = new PrintWriter(writer);
+        DeckWriteEvent event = new DeckWriteEvent();
+        event.begin();
+        // Only count what is written if the event can be recorded
+        CountingWriter countingWriter = event.isEnabled() ? new CountingWriter(writer) : null;
+        PrintWriter printWriter = new PrintWriter(countingWriter == null ? writer : countingWriter);
         Iterator<Map.Entry<Deck.Section, ImmutableMultiset<ArenaDeckEntry>>> sectionIterator = deck.getAllSections().iterator();
         while (sectionIterator.hasNext()) {
             Map.Entry<Deck.Section, ImmutableMultiset<ArenaDeckEntry>> entry = sectionIterator.next();
@@ -133,6 +139,9 @@ public final class ArenaDeckFormatter {
                 printWriter.println();
             }
         }
+        if (countingWriter != null) {
+            event.endCharacterWrite("arena", () -> deck.getAllCards().size(), countingWriter.getCount());
+        }
     }
 
     private static final Pattern DECK_ENTRY_PATTERN = Pattern.compile("(\\d+)\\s+(.*)");
@@ -167,7 +176,7 @@ public final class ArenaDeckFormatter {
         return builder.build();
     }
 
-    public static Deck<Card> readDeck(Spoiler spoiler, Reader reader) throws IOException {
+    public static Deck<Card> readDeck(CardLookup spoiler, Reader reader) throws IOException {
         return readEntries(reader).transform(entry -> spoiler.lookUpByName(entry.getCardName())
                 .orElseThrow(() -> new DeckDataException("No card found with name: " + entry)));
     }
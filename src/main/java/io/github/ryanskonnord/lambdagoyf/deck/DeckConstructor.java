@@ -31,6 +31,8 @@ import io.github.ryanskonnord.lambdagoyf.card.DeckElement;
 import io.github.ryanskonnord.lambdagoyf.card.FinishedCardVersion;
 import io.github.ryanskonnord.lambdagoyf.card.MtgoCard;
 import io.github.ryanskonnord.lambdagoyf.card.field.ExpansionType;
+import io.github.ryanskonnord.lambdagoyf.diagnostics.DeckConstructionEvent;
+import io.github.ryanskonnord.lambdagoyf.diagnostics.DeckTransformationEvent;
 import io.github.ryanskonnord.util.ComparatorMutator;
 import io.github.ryanskonnord.util.OrderingUtil;
 
@@ -58,6 +60,7 @@ public final class DeckConstructor<V extends CardVersion, T extends DeckElement<
         return (T o1, T o2) -> 0;
     }
 
+    private final String outputType;
     private final CardVersionExtractor<V> versionExtractor;
     private final Function<? super V, T> outputConstructor;
     private final ToIntFunction<? super T> availability;
@@ -69,6 +72,7 @@ public final class DeckConstructor<V extends CardVersion, T extends DeckElement<
     private final Function<Card, Stream<T>> fallback;
 
     private DeckConstructor(Builder<V, T> builder) {
+        this.outputType = Objects.requireNonNull(builder.outputType);
         this.versionExtractor = Objects.requireNonNull(builder.versionExtractor);
         this.outputConstructor = Objects.requireNonNull(builder.outputConstructor);
         this.availability = Objects.requireNonNull(builder.availability);
@@ -81,6 +85,7 @@ public final class DeckConstructor<V extends CardVersion, T extends DeckElement<
     }
 
     public static final class Builder<V extends CardVersion, T extends DeckElement<V>> {
+        private final String outputType;
         private final CardVersionExtractor<V> versionExtractor;
         private final Function<? super V, T> outputConstructor;
         private ToIntFunction<? super T> availability = getUnlimitedAvailability();
@@ -91,7 +96,9 @@ public final class DeckConstructor<V extends CardVersion, T extends DeckElement<
         private UnaryOperator<Deck<T>> outputTransformation = UnaryOperator.identity();
         private Function<Card, Stream<T>> fallback = card -> Stream.empty();
 
-        private Builder(CardVersionExtractor<V> versionExtractor, Function<? super V, T> outputConstructor) {
+        private Builder(String outputType, CardVersionExtractor<V> versionExtractor,
+                        Function<? super V, T> outputConstructor) {
+            this.outputType = Objects.requireNonNull(outputType);
             this.versionExtractor = Objects.requireNonNull(versionExtractor);
             this.outputConstructor = Objects.requireNonNull(outputConstructor);
         }
@@ -158,7 +165,7 @@ public final class DeckConstructor<V extends CardVersion, T extends DeckElement<
 
 
     public static Builder<MtgoCard, MtgoDeck.CardEntry> createForMtgo() {
-        return new Builder<>(CardVersionExtractor.getMtgoCards(), MtgoDeck.CardEntry::new)
+        return new Builder<>("MTGO", CardVersionExtractor.getMtgoCards(), MtgoDeck.CardEntry::new)
                 .withPreferenceOrder().set(getDefaultOrder());
     }
 
@@ -167,7 +174,7 @@ public final class DeckConstructor<V extends CardVersion, T extends DeckElement<
                 .comparing((ArenaCard arenaCard) -> arenaCard.getEdition().getExpansion()
                         .getType().getEnum().filter(ExpansionType::isStandardRelease).isEmpty())
                 .thenComparing(Comparator.comparing(ArenaCard::getEdition).reversed());
-        return new Builder<>(CardVersionExtractor.getArenaCard(), ArenaCard::getDeckEntry)
+        return new Builder<>("Arena", CardVersionExtractor.getArenaCard(), ArenaCard::getDeckEntry)
                 .withPreferenceOrder().set(defaultOrder)
                 .withFallback(card -> Stream.of(ArenaDeckEntry.fromSimpleCardName(card.getMainName())));
     }
@@ -178,12 +185,36 @@ public final class DeckConstructor<V extends CardVersion, T extends DeckElement<
     }
 
     public Deck<T> createDeck(Deck<Card> unversionedDeck) {
+        DeckConstructionEvent event = new DeckConstructionEvent();
+        event.begin();
         Deck<Card> transformedDeck = deckTransformation.apply(unversionedDeck);
         Deck<T> versionedDeck = transformedDeck.getEntries()
                 .map(this::chooseVersion)
                 .collect(Deck.toDeck())
                 .transform(this::transformCardVersion);
-        return outputTransformation.apply(versionedDeck);
+        Deck<T> outputDeck = applyOutputTransformation(versionedDeck);
+        event.end();
+        if (event.shouldCommit()) {
+            event.outputType = outputType;
+            event.inputCards = unversionedDeck.getAllCards().size();
+            event.outputCards = outputDeck.getAllCards().size();
+            event.commit();
+        }
+        return outputDeck;
+    }
+
+    private Deck<T> applyOutputTransformation(Deck<T> versionedDeck) {
+        DeckTransformationEvent event = new DeckTransformationEvent();
+        event.begin();
+        Deck<T> outputDeck = outputTransformation.apply(versionedDeck);
+        event.end();
+        if (event.shouldCommit()) {
+            event.outputType = outputType;
+            event.cardsBefore = versionedDeck.getAllCards().size();
+            event.cardsAfter = outputDeck.getAllCards().size();
+            event.commit();
+        }
+        return outputDeck;
     }
 
     private Comparator<T> comparingVersions(Comparator<V> versionComparator) {
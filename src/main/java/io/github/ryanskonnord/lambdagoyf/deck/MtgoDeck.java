@@ -26,10 +26,10 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
 import io.github.ryanskonnord.lambdagoyf.card.Card;
 import io.github.ryanskonnord.lambdagoyf.card.CardFace;
+import io.github.ryanskonnord.lambdagoyf.card.CardLookup;
 import io.github.ryanskonnord.lambdagoyf.card.CardNames;
 import io.github.ryanskonnord.lambdagoyf.card.DeckElement;
 import io.github.ryanskonnord.lambdagoyf.card.MtgoCard;
-import io.github.ryanskonnord.lambdagoyf.card.Spoiler;
 import io.github.ryanskonnord.util.MapCollectors;
 
 import java.util.ArrayList;
@@ -152,7 +152,7 @@ public class MtgoDeck {
         private final List<DeckEntry> entries = new ArrayList<>();
 
 
-        public Builder add(Spoiler spoiler, String name, long id, int quantity, boolean isInSideboard) {
+        public Builder add(CardLookup spoiler, String name, long id, int quantity, boolean isInSideboard) {
             Optional<MtgoCard> version = spoiler.lookUpByMtgoId(id);
             name = version.isPresent() ? getMtgoName(version.get().getCard()) : name;
             CardEntry cardEntry = new CardEntry(name, id, version);
@@ -26,14 +26,18 @@ import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.MoreCollectors;
 import com.google.common.collect.Multiset;
+import com.google.common.io.CountingOutputStream;
 import io.github.ryanskonnord.lambdagoyf.card.Card;
 import io.github.ryanskonnord.lambdagoyf.card.CardEdition;
+import io.github.ryanskonnord.lambdagoyf.card.CardLookup;
+import io.github.ryanskonnord.lambdagoyf.card.CardNameIndex;
 import io.github.ryanskonnord.lambdagoyf.card.Expansion;
 import io.github.ryanskonnord.lambdagoyf.card.MtgoCard;
-import io.github.ryanskonnord.lambdagoyf.card.Spoiler;
 import io.github.ryanskonnord.lambdagoyf.card.Word;
 import io.github.ryanskonnord.lambdagoyf.card.field.Finish;
 import io.github.ryanskonnord.lambdagoyf.card.field.Rarity;
+import io.github.ryanskonnord.lambdagoyf.diagnostics.CountingWriter;
+import io.github.ryanskonnord.lambdagoyf.diagnostics.DeckWriteEvent;
 import io.github.ryanskonnord.util.NodeListAdapter;
 import org.w3c.dom.Document;
 import org.w3c.dom.NamedNodeMap;
@@ -150,7 +154,11 @@ public final class MtgoDeckFormatter {
     }
 
     public static void writeTxt(Writer writer, Deck<Card> deck) throws IOException {
-        try (BufferedWriter bufferedWriter = new BufferedWriter(writer)) {
+        DeckWriteEvent event = new DeckWriteEvent();
+        event.begin();
+        // Only count what is written if the event can be recorded
+        CountingWriter countingWriter = event.isEnabled() ? new CountingWriter(writer) : null;
+        try (BufferedWriter bufferedWriter = new BufferedWriter(countingWriter == null ? writer : countingWriter)) {
             for (Multiset.Entry<Card> entry : deck.get(MAIN_DECK).entrySet()) {
                 bufferedWriter.write(formatTxtLine(entry));
             }
@@ -167,6 +175,9 @@ public final class MtgoDeckFormatter {
         } finally {
             writer.close();
         }
+        if (countingWriter != null) {
+            event.endCharacterWrite("txt", () -> deck.getAllCards().size(), countingWriter.getCount());
+        }
     }
 
     public static Deck<Long> parseDek(InputStream inputStream) throws IOException {
@@ -220,10 +231,14 @@ public final class MtgoDeckFormatter {
     }
 
     public static void writeDek(OutputStream outputStream, Deck<MtgoDeck.CardEntry> deck) throws IOException {
+        DeckWriteEvent event = new DeckWriteEvent();
+        event.begin();
         List<String> lines = streamEntries(deck)
                 .map(MtgoDeckFormatter::formatDekEntry)
                 .collect(Collectors.toList());
-        try (Writer writer = new OutputStreamWriter(outputStream, Charsets.UTF_8)) {
+        CountingOutputStream countingStream = event.isEnabled() ? new CountingOutputStream(outputStream) : null;
+        try (Writer writer = new OutputStreamWriter(countingStream == null ? outputStream : countingStream,
+                Charsets.UTF_8)) {
             writer.write("" +
                     "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
                     "<Deck xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\" " +
@@ -235,6 +250,9 @@ public final class MtgoDeckFormatter {
             }
             writer.write("</Deck>");
         }
+        if (countingStream != null) {
+            event.endByteWrite("dek", () -> deck.getAllCards().size(), countingStream.getCount());
+        }
     }
 
     public static final class MtgoCsvEntry {
@@ -305,7 +323,7 @@ public final class MtgoDeckFormatter {
         }
     }
 
-    public static MtgoDeck parseCsv(Spoiler spoiler, Reader reader) throws IOException {
+    public static MtgoDeck parseCsv(CardLookup spoiler, Reader reader) throws IOException {
         MtgoDeck.Builder builder = new MtgoDeck.Builder();
         for (MtgoCsvEntry entry : parseCsvToRaw(reader)) {
             builder.add(spoiler, entry.name, entry.id, entry.quantity, entry.sideboarded);
@@ -326,6 +344,8 @@ public final class MtgoDeckFormatter {
     }
 
     public static void writeCsv(Writer writer, Deck<MtgoCard> deck) throws IOException {
+        DeckWriteEvent event = new DeckWriteEvent();
+        event.begin();
         boolean hasSideboard = !deck.getLegalSideboard().isEmpty();
         Deck<MtgoDeck.CardEntry> transform = deck.transform(MtgoDeck.CardEntry::new);
         List<String> lines = streamEntries(transform)
@@ -350,7 +370,8 @@ public final class MtgoDeckFormatter {
                     return builder.append('\n').toString();
                 })
                 .collect(Collectors.toList());
-        try (BufferedWriter bufferedWriter = new BufferedWriter(writer)) {
+        CountingWriter countingWriter = event.isEnabled() ? new CountingWriter(writer) : null;
+        try (BufferedWriter bufferedWriter = new BufferedWriter(countingWriter == null ? writer : countingWriter)) {
             bufferedWriter.write("Card Name,Quantity,ID #,Rarity,Set,Collector #,Premium,");
             if (hasSideboard) {
                 bufferedWriter.write("Sideboarded,");
@@ -360,6 +381,9 @@ public final class MtgoDeckFormatter {
                 bufferedWriter.write(line);
             }
         }
+        if (countingWriter != null) {
+            event.endCharacterWrite("csv", () -> deck.getAllCards().size(), countingWriter.getCount());
+        }
     }
 
     private static String formatRarity(Word<Rarity> rarity) {
@@ -368,9 +392,59 @@ public final class MtgoDeckFormatter {
     }
 
 
-    public static Deck<Card> createDeckFromCardNames(Spoiler spoiler, Deck<String> cardNames) {
+    /**
+     * A name in a deck list that isn't the name of any card, and the cards that it might have meant.
+     */
+    public static final class MissingName {
+        private final String name;
+        private final ImmutableList<CardNameIndex.Match> suggestions;
+        private final Optional<CardNameIndex.Match> resolution;
+
+        private MissingName(String name, ImmutableList<CardNameIndex.Match> suggestions,
+                            Optional<CardNameIndex.Match> resolution) {
+            this.name = Objects.requireNonNull(name);
+            this.suggestions = Objects.requireNonNull(suggestions);
+            this.resolution = Objects.requireNonNull(resolution);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return cards with names close to this one, closest first
+         */
+        public ImmutableList<CardNameIndex.Match> getSuggestions() {
+            return suggestions;
+        }
+
+        /**
+         * @return the closest suggestion, if approximate names are being resolved and no other card is as close, which
+         * was put in the deck in place of this name
+         */
+        public Optional<CardNameIndex.Match> getResolution() {
+            return resolution;
+        }
+
+        @Override
+        public String toString() {
+            if (resolution.isPresent()) {
+                return name + " -> " + resolution.get();
+            }
+            return suggestions.isEmpty() ? name : name + " (did you mean: " + suggestions.stream()
+                    .map(CardNameIndex.Match::toString).collect(Collectors.joining(", ")) + ")";
+        }
+    }
+
+    /**
+     * Look up the cards in a deck list by name.
+     *
+     * @throws DeckDataException if any name matches no card, listing the cards that each such name might have meant
+     */
+    public static Deck<Card> createDeckFromCardNames(CardLookup spoiler, Deck<String> cardNames) {
         Set<String> missingNames = Collections.synchronizedSet(new TreeSet<>());
-        Deck<Card> deck = createDeckFromCardNames(spoiler, cardNames, missingNames::add);
+        Deck<Card> deck = lookUpCardNames(spoiler, cardNames, false,
+                (MissingName missingName) -> missingNames.add(missingName.toString()));
         if (missingNames.isEmpty()) {
             return deck;
         } else {
@@ -378,9 +452,35 @@ public final class MtgoDeckFormatter {
         }
     }
 
-    public static Deck<Card> createDeckFromCardNames(Spoiler spoiler,
+    /**
+     * Look up the cards in a deck list by name, leaving out any name that matches no card.
+     *
+     * @param missingNameHandler receives each name that matched no card
+     */
+    public static Deck<Card> createDeckFromCardNames(CardLookup spoiler,
                                                      Deck<String> cardNames,
                                                      Consumer<? super String> missingNameHandler) {
+        return lookUpCardNames(spoiler, cardNames, false,
+                (MissingName missingName) -> missingNameHandler.accept(missingName.getName()));
+    }
+
+    /**
+     * Look up the cards in a deck list by name, resolving a name that matches no card exactly to the closest match
+     * from the lookup's {@link CardLookup#getNameIndex name index}, if it has one and no other card is as close. A
+     * name that can't be resolved is left out of the deck.
+     *
+     * @param missingNameHandler receives each name that didn't match exactly, with how it was resolved
+     */
+    public static Deck<Card> resolveDeckFromCardNames(CardLookup spoiler,
+                                                      Deck<String> cardNames,
+                                                      Consumer<? super MissingName> missingNameHandler) {
+        return lookUpCardNames(spoiler, cardNames, true, missingNameHandler);
+    }
+
+    private static Deck<Card> lookUpCardNames(CardLookup spoiler,
+                                              Deck<String> cardNames,
+                                              boolean resolveApproximately,
+                                              Consumer<? super MissingName> missingNameHandler) {
         return cardNames.flatTransform((String name) -> {
             Optional<Card> card = spoiler.lookUpByName(name);
             if (!card.isPresent()) {
@@ -395,7 +495,15 @@ public final class MtgoDeckFormatter {
                 }
             }
             if (!card.isPresent()) {
-                missingNameHandler.accept(name);
+                String missingName = name;
+                ImmutableList<CardNameIndex.Match> suggestions = spoiler.getNameIndex()
+                        .map((CardNameIndex index) -> index.search(missingName))
+                        .orElse(ImmutableList.of());
+                Optional<CardNameIndex.Match> resolution = resolveApproximately
+                        ? CardNameIndex.getUniqueBest(suggestions)
+                        : Optional.empty();
+                missingNameHandler.accept(new MissingName(name, suggestions, resolution));
+                card = resolution.map(CardNameIndex.Match::getCard);
             }
             return card;
         });
@@ -0,0 +1,49 @@
+/*
+ * Lambdagoyf: A Software Suite for MTG Hobbyists
+ * https://github.com/RyanSkonnord/lambdagoyf
+ *
+ * Copyright 2024 Ryan Skonnord
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ryanskonnord.lambdagoyf.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("lambdagoyf.BulkParse")
+@Label("Bulk Data Parse")
+@Description("Decoding one bulk data file, or the snapshot that stands in for it, into card entries")
+@Category({"Lambdagoyf", "Ingestion"})
+public final class BulkParseEvent extends Event {
+    @Label("File")
+    public String file;
+
+    @Label("Decoding")
+    public String decoding;
+
+    @Label("From Snapshot")
+    public boolean fromSnapshot;
+
+    @Label("File Size")
+    @DataAmount
+    public long fileBytes;
+
+    @Label("Entries")
+    public long entries;
+}
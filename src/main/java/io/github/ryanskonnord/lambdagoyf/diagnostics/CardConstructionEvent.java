@@ -0,0 +1,42 @@
+/*
+ * Lambdagoyf: A Software Suite for MTG Hobbyists
+ * https://github.com/RyanSkonnord/lambdagoyf
+ *
+ * Copyright 2024 Ryan Skonnord
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ryanskonnord.lambdagoyf.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("lambdagoyf.CardConstruction")
+@Label("Card Construction")
+@Description("Building the cards for a spoiler from their grouped entries")
+@Category({"Lambdagoyf", "Ingestion"})
+public final class CardConstructionEvent extends Event {
+    @Label("Entries")
+    public long entries;
+
+    @Label("Cards Built")
+    public long cardsBuilt;
+
+    @Label("Cards Reused")
+    @Description("Cards carried over unchanged from a previous spoiler revision")
+    public long cardsReused;
+}
@@ -0,0 +1,75 @@
+/*
+ * Lambdagoyf: A Software Suite for MTG Hobbyists
+ * https://github.com/RyanSkonnord/lambdagoyf
+ *
+ * Copyright 2024 Ryan Skonnord
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ryanskonnord.lambdagoyf.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.util.function.IntSupplier;
+
+@Name("lambdagoyf.DeckWrite")
+@Label("Deck File Write")
+@Category({"Lambdagoyf", "Deck"})
+public final class DeckWriteEvent extends Event {
+    @Label("Format")
+    public String format;
+
+    @Label("Cards")
+    public int cards;
+
+    @Label("Bytes")
+    @Description("Bytes written, for formats written to a byte stream")
+    @DataAmount
+    public long bytes;
+
+    @Label("Characters")
+    @Description("Characters written, for formats written to a character stream")
+    public long characters;
+
+    /**
+     * End the event and commit it if it is enabled, counting the cards only in that case.
+     */
+    public void endByteWrite(String format, IntSupplier cards, long bytes) {
+        end();
+        if (shouldCommit()) {
+            this.format = format;
+            this.cards = cards.getAsInt();
+            this.bytes = bytes;
+            commit();
+        }
+    }
+
+    /**
+     * End the event and commit it if it is enabled, counting the cards only in that case.
+     */
+    public void endCharacterWrite(String format, IntSupplier cards, long characters) {
+        end();
+        if (shouldCommit()) {
+            this.format = format;
+            this.cards = cards.getAsInt();
+            this.characters = characters;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Lambdagoyf: A Software Suite for MTG Hobbyists
+ * https://github.com/RyanSkonnord/lambdagoyf
+ *
+ * Copyright 2024 Ryan Skonnord
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ryanskonnord.lambdagoyf.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("lambdagoyf.HttpTransfer")
+@Label("HTTP Transfer")
+@Category({"Lambdagoyf", "Fetch"})
+public final class HttpTransferEvent extends Event {
+    @Label("Method")
+    public String method;
+
+    @Label("URI")
+    public String uri;
+
+    @Label("Failed")
+    @Description("Whether the request ended without a response, such as when its connection was lost")
+    public boolean failed;
+
+    @Label("Status")
+    @Description("The response's status code, or 0 if the request failed")
+    public int status;
+
+    @Label("Resumed From")
+    @Description("The offset of a ranged request that continues a partial download")
+    @DataAmount
+    public long resumedFrom;
+
+    @Label("Body Size")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,151 @@
+/*
+ * Lambdagoyf: A Software Suite for MTG Hobbyists
+ * https://github.com/RyanSkonnord/lambdagoyf
+ *
+ * Copyright 2024 Ryan Skonnord
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ryanskonnord.lambdagoyf.scryfall;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Optional;
+
+/**
+ * Scans a file holding a top-level JSON array of objects for the boundaries between its elements, and groups them
+ * into byte ranges that can be decoded independently.
+ * <p>
+ * The scan only tracks strings, escapes and nesting depth, so it runs much faster than a full decode. The file is
+ * mapped in windows, which allows files larger than a single mapped buffer.
+ */
+final class ScryfallArraySplitter {
+
+    private static final long WINDOW_SIZE = 1L << 28;
+
+    /**
+     * A range of bytes that contains one or more whole elements of the array, separated by commas and whitespace.
+     */
+    static final class Range {
+        private final long start;
+        private final long end;
+
+        private Range(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getLength() {
+            return end - start;
+        }
+    }
+
+    private final FileChannel channel;
+    private final long size;
+    private final long targetRangeSize;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    private long position = 0;
+    private int depth = 0;
+    private boolean inString = false;
+    private boolean escaped = false;
+    private boolean finished = false;
+
+    ScryfallArraySplitter(FileChannel channel, long targetRangeSize) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.targetRangeSize = targetRangeSize;
+    }
+
+    private byte byteAt(long index) throws IOException {
+        if (window == null || index >= windowStart + window.capacity()) {
+            windowStart = index;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(WINDOW_SIZE, size - windowStart));
+        }
+        return window.get((int) (index - windowStart));
+    }
+
+    /**
+     * @return the next range of whole elements, or empty if the end of the array has been reached
+     */
+    public Optional<Range> next() throws IOException {
+        long rangeStart = -1;
+        long rangeEnd = -1;
+        while (!finished) {
+            if (position >= size) {
+                throw new ScryfallDataException();
+            }
+            long index = position++;
+            byte b = byteAt(index);
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (b == '\\') {
+                    escaped = true;
+                } else if (b == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            switch (b) {
+                case '"':
+                    if (depth < 2) throw new ScryfallDataException();
+                    inString = true;
+                    break;
+                case '{':
+                    if (depth == 0) throw new ScryfallDataException();
+                    if (depth == 1 && rangeStart < 0) {
+                        rangeStart = index;
+                    }
+                    depth++;
+                    break;
+                case '[':
+                    if (depth == 1) throw new ScryfallDataException();
+                    depth++;
+                    break;
+                case '}':
+                case ']':
+                    depth--;
+                    if (depth == 1) {
+                        rangeEnd = position;
+                        if (rangeEnd - rangeStart >= targetRangeSize) {
+                            return Optional.of(new Range(rangeStart, rangeEnd));
+                        }
+                    } else if (depth == 0) {
+                        finished = true;
+                    } else if (depth < 0) {
+                        throw new ScryfallDataException();
+                    }
+                    break;
+                case ',':
+                case ' ':
+                case '\t':
+                case '\n':
+                case '\r':
+                    break;
+                default:
+                    if (depth < 2) throw new ScryfallDataException();
+                    break;
+            }
+        }
+        return rangeStart < 0 ? Optional.empty() : Optional.of(new Range(rangeStart, rangeEnd));
+    }
+}
@@ -21,26 +21,19 @@ package io.github.ryanskonnord.lambdagoyf.scryfall;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableSetMultimap;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Multimaps;
 import com.google.common.primitives.ImmutableLongArray;
-import io.github.ryanskonnord.util.MapCollectors;
 
 import java.net.URI;
 import java.time.LocalDate;
-import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.OptionalLong;
-import java.util.Set;
 import java.util.UUID;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static io.github.ryanskonnord.lambdagoyf.scryfall.ScryfallCardField.*;
+
 public final class ScryfallCardEntry implements ScryfallCardFace {
 
     private final Optional<ImmutableList<ImmutableMap<String, String>>> allParts;
@@ -126,128 +119,112 @@ public final class ScryfallCardEntry implements ScryfallCardFace {
     private final Optional<UUID> variationOf;
     private final Optional<String> watermark;
 
+    // Bases for URIs that are rebuilt on demand if the parser did not retain them
+    private static final String API_BASE = "https://api.scryfall.com/";
+    private static final String WEB_BASE = "https://scryfall.com/";
+
     private static final UUID CARD_BACK_FLYWEIGHT = new UUID(0x0aeebaf58c7d4636L, 0x9e828c27447861f7L);
 
     ScryfallCardEntry(Map<String, ?> data, Consumer<String> extraKeyConsumer) {
-        data = mungeForHiwtyl(data);
-        allParts = Optional.ofNullable((List<?>) data.remove("all_parts"))
-                .map(ScryfallParser.parseObjectList(ScryfallParser::parseStringMap));
-        arenaId = ScryfallParser.parseNumber((Double) data.remove("arena_id"));
-        artist = Objects.requireNonNull((String) data.remove("artist"));
-        artistIds = Optional.ofNullable((List<?>) data.remove("artist_ids")).map(value ->
-                ScryfallParser.parseStrings(value).stream().map(UUID::fromString).collect(ImmutableList.toImmutableList()));
-        booster = Objects.requireNonNull((Boolean) data.remove("booster"));
-        borderColor = Objects.requireNonNull((String) data.remove("border_color"));
-        cardBackId = Optional.ofNullable((String) data.remove("card_back_id"))
-                .map(id -> CARD_BACK_FLYWEIGHT.toString().equals(id) ? CARD_BACK_FLYWEIGHT : UUID.fromString(id));
-        cardFaces = Optional.ofNullable((List<?>) data.remove("card_faces"))
-                .map(ScryfallParser.parseObjectList(ScryfallCardFaceEntry::new));
-        cardmarketId = ScryfallParser.parseNumber(((Double) data.remove("cardmarket_id")));
-        cmc = Objects.requireNonNull((Double) data.remove("cmc"));
-        collectorNumber = Objects.requireNonNull((String) data.remove("collector_number"));
-        colorIdentity = ScryfallParser.parseStrings((List<?>) data.remove("color_identity"));
-        colorIndicator = Optional.ofNullable((List<?>) data.remove("color_indicator")).map(ScryfallParser::parseStrings);
-        colors = Optional.ofNullable((List<?>) data.remove("colors")).map(ScryfallParser::parseStrings);
-        contentWarning = Optional.ofNullable((Boolean) data.remove("content_warning"));
-        digital = Objects.requireNonNull((Boolean) data.remove("digital"));
-        edhrecRank = ScryfallParser.parseNumber((Double) data.remove("edhrec_rank"));
-        finishes = ScryfallParser.parseStrings((List<?>) data.remove("finishes"));
-        flavorText = Optional.ofNullable((String) data.remove("flavor_text"));
-        foil = Objects.requireNonNull((Boolean) data.remove("foil"));
-        frame = Objects.requireNonNull((String) data.remove("frame"));
-        frameEffects = ScryfallParser.parseOptionalStrings((List<?>) data.remove("frame_effects"));
-        fullArt = Objects.requireNonNull((Boolean) data.remove("full_art"));
-        games = ScryfallParser.parseStrings((List<?>) data.remove("games"));
-        handModifier = Optional.ofNullable((String) data.remove("hand_modifier"));
-        highresImage = Objects.requireNonNull((Boolean) data.remove("highres_image"));
-        id = UUID.fromString((String) data.remove("id"));
-        illustrationId = Optional.ofNullable((String) data.remove("illustration_id")).map(UUID::fromString);
-        imageStatus = Objects.requireNonNull((String) data.remove("image_status"));
-        imageUris = Optional.ofNullable((Map<?, ?>) data.remove("image_uris")).map(ScryfallParser::parseStringMap);
-        keywords = ScryfallParser.parseStrings((List<?>) data.remove("keywords"));
-        lang = Objects.requireNonNull((String) data.remove("lang"));
-        layout = Objects.requireNonNull((String) data.remove("layout"));
-        legalities = ScryfallParser.parseStringMap((Map<?, ?>) data.remove("legalities"));
-        lifeModifier = Optional.ofNullable((String) data.remove("life_modifier"));
-        loyalty = Optional.ofNullable((String) data.remove("loyalty"));
-        manaCost = Optional.ofNullable((String) data.remove("mana_cost"));
-        mtgoFoilId = ScryfallParser.parseNumber((Double) data.remove("mtgo_foil_id"));
-        mtgoId = ScryfallParser.parseNumber((Double) data.remove("mtgo_id"));
-        multiverseIds = ScryfallParser.parseNumbers((List<?>) data.remove("multiverse_ids"));
-        name = Objects.requireNonNull((String) data.remove("name"));
-        nonfoil = Objects.requireNonNull((Boolean) data.remove("nonfoil"));
-        object = Objects.requireNonNull((String) data.remove("object"));
-        oracleId = UUID.fromString((String) data.remove("oracle_id"));
-        oracleText = Optional.ofNullable((String) data.remove("oracle_text"));
-        oversized = Objects.requireNonNull((Boolean) data.remove("oversized"));
-        power = Optional.ofNullable((String) data.remove("power"));
-        printedName = Optional.ofNullable((String) data.remove("printed_name"));
-        flavorName = Optional.ofNullable((String) data.remove("flavor_name"));
-        preview = Optional.ofNullable((Map<?, ?>) data.remove("preview")).map(ScryfallParser::parseStringMap);
-        prices = ScryfallParser.parseStringMap((Map<?, ?>) data.remove("prices"));
-        printedText = Optional.ofNullable((String) data.remove("printed_text"));
-        printedTypeLine = Optional.ofNullable((String) data.remove("printed_type_line"));
-        printsSearchUri = URI.create((String) data.remove("prints_search_uri"));
-        producedMana = ScryfallParser.parseOptionalStrings((List<?>) data.remove("produced_mana"));
-        promo = Objects.requireNonNull((Boolean) data.remove("promo"));
-        promoTypes = ScryfallParser.parseOptionalStrings((List<?>) data.remove("promo_types"));
-        rarity = Objects.requireNonNull((String) data.remove("rarity"));
-        relatedUris = ScryfallParser.parseStringMap((Map<?, ?>) data.remove("related_uris"));
-        releasedAt = LocalDate.parse((String) data.remove("released_at"));
-        reprint = Objects.requireNonNull((Boolean) data.remove("reprint"));
-        reserved = Objects.requireNonNull((Boolean) data.remove("reserved"));
-        rulingsUri = URI.create((String) data.remove("rulings_uri"));
-        scryfallSetUri = URI.create((String) data.remove("scryfall_set_uri"));
-        scryfallUri = URI.create((String) data.remove("scryfall_uri"));
-        securityStamp = Optional.ofNullable((String) data.remove("security_stamp"));
-        set = Objects.requireNonNull((String) data.remove("set"));
-        setId = UUID.fromString((String) data.remove("set_id"));
-        setName = Objects.requireNonNull((String) data.remove("set_name"));
-        setSearchUri = URI.create((String) data.remove("set_search_uri"));
-        setType = Objects.requireNonNull((String) data.remove("set_type"));
-        setUri = URI.create((String) data.remove("set_uri"));
-        storySpotlight = Objects.requireNonNull((Boolean) data.remove("story_spotlight"));
-        tcgplayerId = ScryfallParser.parseNumber((Double) data.remove("tcgplayer_id"));
-        tcgplayerEtchedId = ScryfallParser.parseNumber((Double) data.remove("tcgplayer_etched_id"));
-        textless = Objects.requireNonNull((Boolean) data.remove("textless"));
-        toughness = Optional.ofNullable((String) data.remove("toughness"));
-        typeLine = Objects.requireNonNull((String) data.remove("type_line"));
-        uri = URI.create((String) data.remove("uri"));
-        variation = Objects.requireNonNull((Boolean) data.remove("variation"));
-        variationOf = Optional.ofNullable((String) data.remove("variation_of")).map(UUID::fromString);
-        watermark = Optional.ofNullable((String) data.remove("watermark"));
-
-        if (!data.isEmpty() && extraKeyConsumer != null) {
-            for (String extraKey : data.keySet()) {
+        this(ScryfallFieldValues.fromMap(data), extraKeyConsumer, new ScryfallValuePool());
+    }
+
+    ScryfallCardEntry(ScryfallFieldValues values, Consumer<String> extraKeyConsumer, ScryfallValuePool valuePool) {
+        allParts = values.get(ALL_PARTS);
+        arenaId = values.getInteger(ARENA_ID);
+        artist = valuePool.intern(values.getRequired(ARTIST));
+        artistIds = values.get(ARTIST_IDS);
+        booster = values.getRequired(BOOSTER);
+        borderColor = valuePool.intern(values.getRequired(BORDER_COLOR));
+        cardBackId = values.<UUID>get(CARD_BACK_ID)
+                .map(id -> CARD_BACK_FLYWEIGHT.equals(id) ? CARD_BACK_FLYWEIGHT : id);
+        cardFaces = values.<ImmutableList<?>>get(CARD_FACES)
+                .map(ScryfallParser.parseObjectList(face -> new ScryfallCardFaceEntry(face, valuePool)));
+        cardmarketId = values.getInteger(CARDMARKET_ID);
+        cmc = values.<Double>getRequired(CMC);
+        collectorNumber = valuePool.intern(values.getRequired(COLLECTOR_NUMBER));
+        colorIdentity = valuePool.internStrings(values.getRequired(COLOR_IDENTITY));
+        colorIndicator = valuePool.internOptionalStrings(values.get(COLOR_INDICATOR));
+        colors = valuePool.internOptionalStrings(values.get(COLORS));
+        contentWarning = values.get(CONTENT_WARNING);
+        digital = values.getRequired(DIGITAL);
+        edhrecRank = values.getInteger(EDHREC_RANK);
+        finishes = valuePool.internStrings(values.getRequired(FINISHES));
+        flavorText = values.get(FLAVOR_TEXT);
+        foil = values.getRequired(FOIL);
+        frame = valuePool.intern(values.getRequired(FRAME));
+        frameEffects = valuePool.internStrings(values.getList(FRAME_EFFECTS));
+        fullArt = values.getRequired(FULL_ART);
+        games = valuePool.internStrings(values.getRequired(GAMES));
+        handModifier = values.get(HAND_MODIFIER);
+        highresImage = values.getRequired(HIGHRES_IMAGE);
+        id = values.getRequired(ID);
+        illustrationId = values.get(ILLUSTRATION_ID);
+        imageStatus = valuePool.intern(values.getRequired(IMAGE_STATUS));
+        imageUris = values.get(IMAGE_URIS);
+        keywords = valuePool.internStrings(values.getRequired(KEYWORDS));
+        lang = valuePool.intern(values.getRequired(LANG));
+        layout = valuePool.intern(values.getRequired(LAYOUT));
+        legalities = valuePool.internStringMap(values.getRequired(LEGALITIES));
+        lifeModifier = values.get(LIFE_MODIFIER);
+        loyalty = valuePool.internOptional(values.get(LOYALTY));
+        manaCost = valuePool.internOptional(values.get(MANA_COST));
+        mtgoFoilId = values.getInteger(MTGO_FOIL_ID);
+        mtgoId = values.getInteger(MTGO_ID);
+        multiverseIds = values.getRequired(MULTIVERSE_IDS);
+        name = valuePool.intern(values.getRequired(NAME));
+        nonfoil = values.getRequired(NONFOIL);
+        object = valuePool.intern(values.getRequired(OBJECT));
+        oracleId = values.getRequired(ORACLE_ID);
+        oracleText = valuePool.internOptional(values.get(ORACLE_TEXT));
+        oversized = values.getRequired(OVERSIZED);
+        power = valuePool.internOptional(values.get(POWER));
+        printedName = values.get(PRINTED_NAME);
+        flavorName = values.get(FLAVOR_NAME);
+        preview = values.get(PREVIEW);
+        prices = valuePool.internStringMapContents(values.getRequired(PRICES));
+        printedText = values.get(PRINTED_TEXT);
+        printedTypeLine = values.get(PRINTED_TYPE_LINE);
+        printsSearchUri = values.<URI>get(PRINTS_SEARCH_URI).orElse(null);
+        producedMana = valuePool.internStrings(values.getList(PRODUCED_MANA));
+        promo = values.getRequired(PROMO);
+        promoTypes = valuePool.internStrings(values.getList(PROMO_TYPES));
+        rarity = valuePool.intern(values.getRequired(RARITY));
+        relatedUris = values.<ImmutableMap<String, String>>get(RELATED_URIS).orElse(null);
+        releasedAt = valuePool.intern(values.getRequired(RELEASED_AT));
+        reprint = values.getRequired(REPRINT);
+        reserved = values.getRequired(RESERVED);
+        rulingsUri = values.<URI>get(RULINGS_URI).orElse(null);
+        scryfallSetUri = values.<URI>get(SCRYFALL_SET_URI).map(valuePool::intern).orElse(null);
+        scryfallUri = values.<URI>get(SCRYFALL_URI).orElse(null);
+        securityStamp = valuePool.internOptional(values.get(SECURITY_STAMP));
+        set = valuePool.intern(values.getRequired(SET));
+        setId = valuePool.intern(values.getRequired(SET_ID));
+        setName = valuePool.intern(values.getRequired(SET_NAME));
+        setSearchUri = values.<URI>get(SET_SEARCH_URI).map(valuePool::intern).orElse(null);
+        setType = valuePool.intern(values.getRequired(SET_TYPE));
+        setUri = values.<URI>get(SET_URI).map(valuePool::intern).orElse(null);
+        storySpotlight = values.getRequired(STORY_SPOTLIGHT);
+        tcgplayerId = values.getInteger(TCGPLAYER_ID);
+        tcgplayerEtchedId = values.getInteger(TCGPLAYER_ETCHED_ID);
+        textless = values.getRequired(TEXTLESS);
+        toughness = valuePool.internOptional(values.get(TOUGHNESS));
+        typeLine = valuePool.intern(values.getRequired(TYPE_LINE));
+        uri = values.<URI>get(URI).orElse(null);
+        variation = values.getRequired(VARIATION);
+        variationOf = values.get(VARIATION_OF);
+        watermark = valuePool.internOptional(values.get(WATERMARK));
+
+        if (extraKeyConsumer != null) {
+            for (String extraKey : values.getExtraKeys()) {
                 extraKeyConsumer.accept(extraKey);
             }
         }
     }
 
-    private static boolean isHiwtylDfc(Map<String, ?> data) {
-        List<?> cardFaces = (List<?>) data.get("card_faces");
-        if (cardFaces == null || cardFaces.size() != 2) return false;
-        Set<Optional<String>> distinctOracleIds = cardFaces.stream()
-                .map((Object part) -> Optional.ofNullable((String) ((Map<String, ?>) part).get("oracle_id")))
-                .collect(Collectors.toSet());
-        return distinctOracleIds.size() == 1 && Iterables.getOnlyElement(distinctOracleIds).isPresent();
-    }
-
-    private static Map<String, ?> mungeForHiwtyl(Map<String, ?> data) {
-        if (!isHiwtylDfc(data)) return data;
-
-        List<?> cardFaces = (List<?>) data.get("card_faces");
-        ImmutableSetMultimap<String, Object> mergedValues = cardFaces.stream()
-                .flatMap((Object part) -> ((Map<String, Object>) part).entrySet().stream())
-                .collect(MapCollectors.<String, Object>collectingEntries().grouping().toImmutableSetMultimap());
-
-        Map<String, Object> munged = Maps.newHashMapWithExpectedSize(data.size() + mergedValues.keySet().size());
-        munged.putAll(data);
-        for (Map.Entry<String, Set<Object>> entry : Multimaps.asMap(mergedValues).entrySet()) {
-            munged.put(entry.getKey(), entry.getValue().iterator().next());
-        }
-        munged.remove("card_faces");
-        return munged;
+    private static URI deriveUri(String base, String path) {
+        // Qualified because the URI field is statically imported
+        return java.net.URI.create(base + path);
     }
 
     public Stream<ScryfallCardFace> getFaceStream() {
@@ -484,7 +461,8 @@ public final class ScryfallCardEntry implements ScryfallCardFace {
     }
 
     public URI getPrintsSearchUri() {
-        return printsSearchUri;
+        return printsSearchUri != null ? printsSearchUri
+                : deriveUri(API_BASE, "cards/search?order=released&q=oracleid%3A" + oracleId + "&unique=prints");
     }
 
     public ImmutableList<String> getProducedMana() {
@@ -503,8 +481,11 @@ public final class ScryfallCardEntry implements ScryfallCardFace {
         return rarity;
     }
 
+    /**
+     * @return the related URIs, or an empty map if they were not retained
+     */
     public ImmutableMap<String, String> getRelatedUris() {
-        return relatedUris;
+        return relatedUris != null ? relatedUris : ImmutableMap.of();
     }
 
     public LocalDate getReleasedAt() {
@@ -520,15 +501,21 @@ public final class ScryfallCardEntry implements ScryfallCardFace {
     }
 
     public URI getRulingsUri() {
-        return rulingsUri;
+        return rulingsUri != null ? rulingsUri : deriveUri(API_BASE, "cards/" + id + "/rulings");
     }
 
     public URI getScryfallSetUri() {
-        return scryfallSetUri;
+        return scryfallSetUri != null ? scryfallSetUri
+                : deriveUri(WEB_BASE, "sets/" + set + "?utm_source=api");
     }
 
+    /**
+     * @return the card's page on Scryfall; if it was not retained, a URI without the card name's slug, which Scryfall
+     * redirects to the full one
+     */
     public URI getScryfallUri() {
-        return scryfallUri;
+        return scryfallUri != null ? scryfallUri
+                : deriveUri(WEB_BASE, "card/" + set + "/" + collectorNumber + "?utm_source=api");
     }
 
     public Optional<String> getSecurityStamp() {
@@ -548,7 +535,8 @@ public final class ScryfallCardEntry implements ScryfallCardFace {
     }
 
     public URI getSetSearchUri() {
-        return setSearchUri;
+        return setSearchUri != null ? setSearchUri
+                : deriveUri(API_BASE, "cards/search?order=set&q=e%3A" + set + "&unique=prints");
     }
 
     public String getSetType() {
@@ -556,7 +544,7 @@ public final class ScryfallCardEntry implements ScryfallCardFace {
     }
 
     public URI getSetUri() {
-        return setUri;
+        return setUri != null ? setUri : deriveUri(API_BASE, "sets/" + setId);
     }
 
     public boolean isStorySpotlight() {
@@ -586,7 +574,7 @@ public final class ScryfallCardEntry implements ScryfallCardFace {
     }
 
     public URI getUri() {
-        return uri;
+        return uri != null ? uri : deriveUri(API_BASE, "cards/" + id);
     }
 
     public boolean isVariation() {
@@ -0,0 +1,67 @@
+/*
+ * Lambdagoyf: A Software Suite for MTG Hobbyists
+ * https://github.com/RyanSkonnord/lambdagoyf
+ *
+ * Copyright 2024 Ryan Skonnord
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ryanskonnord.lambdagoyf.scryfall;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Decodes a {@link ScryfallCardEntry} directly from a JSON token stream, without first building Gson's untyped
+ * tree of {@code Map}s, {@code List}s and {@code Double}s. Entries are only ever read, so unlike a Gson
+ * {@code TypeAdapter} this has no way to write one back.
+ */
+final class ScryfallCardEntryDecoder {
+
+    private final Consumer<String> extraKeyConsumer;
+    private final Set<ScryfallCardField> skippedFields;
+    private final ScryfallEntryFilter filter;
+    private final ScryfallValuePool valuePool;
+    private final Consumer<? super ScryfallFieldValues> valuesListener;
+
+    /**
+     * @param valuesListener receives each entry's decoded values, before the entry is built from them
+     */
+    ScryfallCardEntryDecoder(Consumer<String> extraKeyConsumer, Set<ScryfallCardField> skippedFields,
+                             ScryfallEntryFilter filter, ScryfallValuePool valuePool,
+                             Consumer<? super ScryfallFieldValues> valuesListener) {
+        this.extraKeyConsumer = extraKeyConsumer;
+        this.skippedFields = skippedFields;
+        this.filter = filter;
+        this.valuePool = valuePool;
+        this.valuesListener = valuesListener;
+    }
+
+    /**
+     * @return the entry, or null if the filter rejected it
+     */
+    public ScryfallCardEntry read(JsonReader in) throws IOException {
+        Optional<ScryfallFieldValues> read = ScryfallFieldValues.read(in, skippedFields, filter);
+        if (read.isEmpty()) {
+            return null;
+        }
+        ScryfallFieldValues values = read.get();
+        valuesListener.accept(values);
+        return new ScryfallCardEntry(values, extraKeyConsumer, valuePool);
+    }
+}
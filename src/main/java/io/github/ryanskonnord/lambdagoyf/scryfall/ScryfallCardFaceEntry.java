@@ -48,24 +48,24 @@ public final class ScryfallCardFaceEntry implements ScryfallCardFace {
     private final Optional<String> typeLine;
     private final Optional<String> watermark;
 
-    ScryfallCardFaceEntry(Map<?, ?> data) {
-        artist = Optional.ofNullable((String) data.get("artist"));
-        colorIndicator = Optional.ofNullable((List<?>) data.get("color_indicator")).map(ScryfallParser::parseStrings);
-        colors = Optional.ofNullable((List<?>) data.get("colors")).map(ScryfallParser::parseStrings);
+    ScryfallCardFaceEntry(Map<?, ?> data, ScryfallValuePool valuePool) {
+        artist = Optional.ofNullable((String) data.get("artist")).map(valuePool::intern);
+        colorIndicator = Optional.ofNullable((List<?>) data.get("color_indicator")).map(ScryfallParser::parseStrings).map(valuePool::internStrings);
+        colors = Optional.ofNullable((List<?>) data.get("colors")).map(ScryfallParser::parseStrings).map(valuePool::internStrings);
         flavorText = Optional.ofNullable((String) data.get("flavor_text"));
         illustrationId = Optional.ofNullable((String) data.get("illustration_id")).map(UUID::fromString);
         imageUris = Optional.ofNullable((Map<?, ?>) data.get("image_uris")).map(ScryfallParser::parseStringMap);
-        loyalty = Optional.ofNullable((String) data.get("loyalty"));
-        manaCost = Objects.requireNonNull((String) data.get("mana_cost"));
-        name = Objects.requireNonNull((String) data.get("name"));
-        object = Objects.requireNonNull((String) data.get("object"));
-        oracleText = Objects.requireNonNull((String) data.get("oracle_text"));
-        power = Optional.ofNullable((String) data.get("power"));
+        loyalty = Optional.ofNullable((String) data.get("loyalty")).map(valuePool::intern);
+        manaCost = valuePool.intern(Objects.requireNonNull((String) data.get("mana_cost")));
+        name = valuePool.intern(Objects.requireNonNull((String) data.get("name")));
+        object = valuePool.intern(Objects.requireNonNull((String) data.get("object")));
+        oracleText = valuePool.intern(Objects.requireNonNull((String) data.get("oracle_text")));
+        power = Optional.ofNullable((String) data.get("power")).map(valuePool::intern);
         printedName = Optional.ofNullable((String) data.get("printed_name"));
         flavorName = Optional.ofNullable((String) data.get("flavor_name"));
-        toughness = Optional.ofNullable((String) data.get("toughness"));
-        typeLine = Optional.ofNullable((String) data.get("type_line"));
-        watermark = Optional.ofNullable((String) data.get("watermark"));
+        toughness = Optional.ofNullable((String) data.get("toughness")).map(valuePool::intern);
+        typeLine = Optional.ofNullable((String) data.get("type_line")).map(valuePool::intern);
+        watermark = Optional.ofNullable((String) data.get("watermark")).map(valuePool::intern);
     }
 
     @Override
@@ -0,0 +1,169 @@
+/*
+ * Lambdagoyf: A Software Suite for MTG Hobbyists
+ * https://github.com/RyanSkonnord/lambdagoyf
+ *
+ * Copyright 2024 Ryan Skonnord
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ryanskonnord.lambdagoyf.scryfall;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import io.github.ryanskonnord.util.MapCollectors;
+
+import java.util.EnumSet;
+import java.util.Optional;
+
+/**
+ * The top-level fields of a card object in Scryfall's bulk data, with the type of value that each field holds.
+ */
+enum ScryfallCardField {
+    ALL_PARTS(ValueType.STRING_MAPS),
+    ARENA_ID(ValueType.INTEGER),
+    ARTIST(ValueType.STRING),
+    ARTIST_IDS(ValueType.UUIDS),
+    BOOSTER(ValueType.BOOLEAN),
+    BORDER_COLOR(ValueType.STRING),
+    CARD_BACK_ID(ValueType.UUID),
+    CARD_FACES(ValueType.OBJECTS),
+    CARDMARKET_ID(ValueType.INTEGER),
+    CMC(ValueType.DECIMAL),
+    COLLECTOR_NUMBER(ValueType.STRING),
+    COLOR_IDENTITY(ValueType.STRINGS),
+    COLOR_INDICATOR(ValueType.STRINGS),
+    COLORS(ValueType.STRINGS),
+    CONTENT_WARNING(ValueType.BOOLEAN),
+    DIGITAL(ValueType.BOOLEAN),
+    EDHREC_RANK(ValueType.INTEGER),
+    FINISHES(ValueType.STRINGS),
+    FLAVOR_NAME(ValueType.STRING),
+    FLAVOR_TEXT(ValueType.STRING),
+    FOIL(ValueType.BOOLEAN),
+    FRAME(ValueType.STRING),
+    FRAME_EFFECTS(ValueType.STRINGS),
+    FULL_ART(ValueType.BOOLEAN),
+    GAMES(ValueType.STRINGS),
+    HAND_MODIFIER(ValueType.STRING),
+    HIGHRES_IMAGE(ValueType.BOOLEAN),
+    ID(ValueType.UUID),
+    ILLUSTRATION_ID(ValueType.UUID),
+    IMAGE_STATUS(ValueType.STRING),
+    IMAGE_URIS(ValueType.STRING_MAP),
+    KEYWORDS(ValueType.STRINGS),
+    LANG(ValueType.STRING),
+    LAYOUT(ValueType.STRING),
+    LEGALITIES(ValueType.STRING_MAP),
+    LIFE_MODIFIER(ValueType.STRING),
+    LOYALTY(ValueType.STRING),
+    MANA_COST(ValueType.STRING),
+    MTGO_FOIL_ID(ValueType.INTEGER),
+    MTGO_ID(ValueType.INTEGER),
+    MULTIVERSE_IDS(ValueType.INTEGERS),
+    NAME(ValueType.STRING),
+    NONFOIL(ValueType.BOOLEAN),
+    OBJECT(ValueType.STRING),
+    ORACLE_ID(ValueType.UUID),
+    ORACLE_TEXT(ValueType.STRING),
+    OVERSIZED(ValueType.BOOLEAN),
+    POWER(ValueType.STRING),
+    PREVIEW(ValueType.STRING_MAP),
+    PRICES(ValueType.STRING_MAP),
+    PRINTED_NAME(ValueType.STRING),
+    PRINTED_TEXT(ValueType.STRING),
+    PRINTED_TYPE_LINE(ValueType.STRING),
+    PRINTS_SEARCH_URI(ValueType.URI),
+    PRODUCED_MANA(ValueType.STRINGS),
+    PROMO(ValueType.BOOLEAN),
+    PROMO_TYPES(ValueType.STRINGS),
+    RARITY(ValueType.STRING),
+    RELATED_URIS(ValueType.STRING_MAP),
+    RELEASED_AT(ValueType.DATE),
+    REPRINT(ValueType.BOOLEAN),
+    RESERVED(ValueType.BOOLEAN),
+    RULINGS_URI(ValueType.URI),
+    SCRYFALL_SET_URI(ValueType.URI),
+    SCRYFALL_URI(ValueType.URI),
+    SECURITY_STAMP(ValueType.STRING),
+    SET(ValueType.STRING),
+    SET_ID(ValueType.UUID),
+    SET_NAME(ValueType.STRING),
+    SET_SEARCH_URI(ValueType.URI),
+    SET_TYPE(ValueType.STRING),
+    SET_URI(ValueType.URI),
+    STORY_SPOTLIGHT(ValueType.BOOLEAN),
+    TCGPLAYER_ID(ValueType.INTEGER),
+    TCGPLAYER_ETCHED_ID(ValueType.INTEGER),
+    TEXTLESS(ValueType.BOOLEAN),
+    TOUGHNESS(ValueType.STRING),
+    TYPE_LINE(ValueType.STRING),
+    URI(ValueType.URI),
+    VARIATION(ValueType.BOOLEAN),
+    VARIATION_OF(ValueType.UUID),
+    WATERMARK(ValueType.STRING);
+
+    enum ValueType {
+        STRING, BOOLEAN, INTEGER, DECIMAL, UUID, DATE, URI,
+        STRINGS, UUIDS, INTEGERS, STRING_MAP, STRING_MAPS,
+
+        /**
+         * A list of nested objects, kept in Gson's untyped form.
+         */
+        OBJECTS;
+    }
+
+    private final String key;
+    private final ValueType type;
+
+    ScryfallCardField(ValueType type) {
+        this.key = name().toLowerCase();
+        this.type = type;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public ValueType getType() {
+        return type;
+    }
+
+    /**
+     * The fields that cards are built from. The others, such as prices, ranks and the URIs of images and pages, can
+     * change from one drop to the next without changing any card.
+     */
+    static final ImmutableSet<ScryfallCardField> MODEL_FIELDS = Sets.immutableEnumSet(
+            ALL_PARTS, ARENA_ID, ARTIST, BOOSTER, BORDER_COLOR, CARD_FACES, CMC, COLLECTOR_NUMBER, COLOR_IDENTITY,
+            COLOR_INDICATOR, COLORS, CONTENT_WARNING, FINISHES, FLAVOR_NAME, FLAVOR_TEXT, FRAME, FRAME_EFFECTS,
+            FULL_ART, GAMES, ID, ILLUSTRATION_ID, LANG, LAYOUT, LEGALITIES, LOYALTY, MANA_COST, MTGO_FOIL_ID, MTGO_ID,
+            NAME, ORACLE_ID, ORACLE_TEXT, POWER, PRINTED_NAME, PROMO_TYPES, RARITY, RELEASED_AT, RESERVED,
+            SECURITY_STAMP, SET, TOUGHNESS, TYPE_LINE, WATERMARK);
+
+    /**
+     * The keys of a {@link #CARD_FACES} object that cards are built from.
+     */
+    static final ImmutableSet<String> MODEL_FACE_KEYS = ImmutableSet.of(
+            "artist", "color_indicator", "colors", "flavor_name", "flavor_text", "illustration_id", "loyalty",
+            "mana_cost", "name", "oracle_text", "power", "printed_name", "toughness", "type_line", "watermark");
+
+    private static final ImmutableMap<String, ScryfallCardField> BY_KEY = EnumSet.allOf(ScryfallCardField.class).stream()
+            .collect(MapCollectors.<ScryfallCardField>collecting()
+                    .indexing(ScryfallCardField::getKey)
+                    .unique().toImmutableMap());
+
+    public static Optional<ScryfallCardField> fromKey(String key) {
+        return Optional.ofNullable(BY_KEY.get(key));
+    }
+}
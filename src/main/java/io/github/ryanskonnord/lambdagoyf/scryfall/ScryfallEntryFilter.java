@@ -0,0 +1,94 @@
+/*
+ * Lambdagoyf: A Software Suite for MTG Hobbyists
+ * https://github.com/RyanSkonnord/lambdagoyf
+ *
+ * Copyright 2024 Ryan Skonnord
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ryanskonnord.lambdagoyf.scryfall;
+
+import com.google.common.collect.ImmutableSortedSet;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Selects card entries by language, game and whether they are digital-only, from the values of those fields alone.
+ * This lets the parser discard an entry as soon as it reads a rejected value, without decoding the rest of it.
+ */
+final class ScryfallEntryFilter {
+
+    public static final ScryfallEntryFilter ALL = new ScryfallEntryFilter(Optional.empty(), Optional.empty(), true);
+
+    private final Optional<ImmutableSortedSet<String>> languages;
+    private final Optional<ImmutableSortedSet<String>> games;
+    private final boolean includeDigital;
+
+    /**
+     * @param languages      the language codes to keep, or empty to keep all
+     * @param games          keep entries available in any of these games, or all entries if empty
+     * @param includeDigital whether to keep printings that exist only in digital games
+     */
+    ScryfallEntryFilter(Optional<? extends Collection<String>> languages, Optional<? extends Collection<String>> games,
+                        boolean includeDigital) {
+        this.languages = languages.map(ImmutableSortedSet::copyOf);
+        this.games = games.map(ImmutableSortedSet::copyOf);
+        this.includeDigital = includeDigital;
+    }
+
+    public boolean acceptsAll() {
+        return languages.isEmpty() && games.isEmpty() && includeDigital;
+    }
+
+    /**
+     * @param value a decoded value of the field
+     * @return false if the entry can be discarded on the basis of this value
+     */
+    public boolean accepts(ScryfallCardField field, Object value) {
+        switch (field) {
+            case LANG:
+                return languages.isEmpty() || languages.get().contains(value);
+            case GAMES:
+                return games.isEmpty() || ((List<?>) value).stream().anyMatch(games.get()::contains);
+            case DIGITAL:
+                return includeDigital || !((Boolean) value);
+            default:
+                return true;
+        }
+    }
+
+    public boolean accepts(ScryfallFieldValues values) {
+        return acceptsField(values, ScryfallCardField.LANG)
+                && acceptsField(values, ScryfallCardField.GAMES)
+                && acceptsField(values, ScryfallCardField.DIGITAL);
+    }
+
+    private boolean acceptsField(ScryfallFieldValues values, ScryfallCardField field) {
+        Object value = values.getRaw(field);
+        return value == null || accepts(field, value);
+    }
+
+    /**
+     * @return a string that identifies which entries this filter keeps
+     */
+    public String getKey() {
+        return String.join(";",
+                "lang=" + languages.map(l -> String.join(",", l)).orElse("*"),
+                "games=" + games.map(g -> String.join(",", g)).orElse("*"),
+                "digital=" + includeDigital);
+    }
+
+}
@@ -19,35 +19,85 @@
 
 package io.github.ryanskonnord.lambdagoyf.scryfall;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.MultimapBuilder;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import io.github.ryanskonnord.lambdagoyf.Environment;
+import io.github.ryanskonnord.lambdagoyf.card.IngestionReport;
+import io.github.ryanskonnord.lambdagoyf.diagnostics.HttpTransferEvent;
 
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.net.URI;
+import java.net.URLEncoder;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
 import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 public class ScryfallFetcher {
     private final Path rootDirectory;
@@ -56,7 +106,13 @@ public class ScryfallFetcher {
     private final Predicate<String> typeFilter;
     private final boolean keepOldDownloads;
     private final Duration refreshInterval;
-    private final Duration downloadDelay;
+    private final Duration checkInterval;
+    private final ScryfallRateLimiter rateLimiter;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final int maxConcurrentDownloads;
+    private final boolean compressedStorage;
+    private final URI apiBaseUri;
     private final Optional<PrintStream> log;
 
     private ScryfallFetcher(Builder builder) {
@@ -66,8 +122,22 @@ public class ScryfallFetcher {
         typeFilter = Optional.ofNullable(builder.typeFilter).orElse(t -> true);
         keepOldDownloads = Optional.ofNullable(builder.keepOldDownloads).orElse(true);
         refreshInterval = Optional.ofNullable(builder.refreshInterval).orElse(Duration.ofDays(7));
-        downloadDelay = Optional.ofNullable(builder.downloadDelay).orElse(Duration.ofMillis(100));
+        checkInterval = Optional.ofNullable(builder.checkInterval).orElse(Duration.ofHours(1));
+        rateLimiter = Optional.ofNullable(builder.rateLimiter).orElseGet(() -> builder.downloadDelay == null
+                ? ScryfallRateLimiter.getShared()
+                : ScryfallRateLimiter.withInterval(builder.downloadDelay));
+        maxAttempts = Optional.ofNullable(builder.maxAttempts).orElse(5);
+        retryBackoff = Optional.ofNullable(builder.retryBackoff).orElse(Duration.ofSeconds(1));
+        maxConcurrentDownloads = Optional.ofNullable(builder.maxConcurrentDownloads).orElse(2);
+        compressedStorage = Optional.ofNullable(builder.compressedStorage).orElse(false);
+        apiBaseUri = Optional.ofNullable(builder.apiBaseUri).orElse(DEFAULT_API_BASE_URI);
         log = Optional.ofNullable(builder.log);
+        if (maxConcurrentDownloads < 1) {
+            throw new IllegalArgumentException("maxConcurrentDownloads must be positive");
+        }
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be positive");
+        }
     }
 
     public static final class Builder {
@@ -77,7 +147,14 @@ public class ScryfallFetcher {
         private Predicate<String> typeFilter;
         private Boolean keepOldDownloads;
         private Duration refreshInterval;
+        private Duration checkInterval;
         private Duration downloadDelay;
+        private ScryfallRateLimiter rateLimiter;
+        private Integer maxAttempts;
+        private Duration retryBackoff;
+        private Integer maxConcurrentDownloads;
+        private Boolean compressedStorage;
+        private URI apiBaseUri;
         private PrintStream log;
 
         public Builder(Path rootDirectory) {
@@ -104,16 +181,80 @@ public class ScryfallFetcher {
             return this;
         }
 
+        /**
+         * Set how old a download must be before it is replaced, if it was made without recording the validators
+         * needed to check it with conditional requests.
+         */
         public Builder withRefreshInterval(Duration refreshInterval) {
             this.refreshInterval = refreshInterval;
             return this;
         }
 
+        /**
+         * Set how long to wait after checking a download before checking it again with conditional requests.
+         */
+        public Builder withCheckInterval(Duration checkInterval) {
+            this.checkInterval = checkInterval;
+            return this;
+        }
+
+        /**
+         * Give this fetcher its own rate limit of one request per interval, instead of sharing
+         * {@link ScryfallRateLimiter#getShared()}.
+         */
         public Builder withDownloadDelay(Duration downloadDelay) {
             this.downloadDelay = downloadDelay;
             return this;
         }
 
+        /**
+         * Send every request through a rate limiter shared with other clients of the Scryfall API. Takes precedence
+         * over {@link #withDownloadDelay}.
+         */
+        public Builder withRateLimiter(ScryfallRateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+            return this;
+        }
+
+        /**
+         * Set how many times to try a request that is throttled, fails with a server error or loses its connection.
+         */
+        public Builder withMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Set how long to wait before the first retry of a failed request, if the server doesn't say. The wait
+         * doubles with each further attempt.
+         */
+        public Builder withRetryBackoff(Duration retryBackoff) {
+            this.retryBackoff = retryBackoff;
+            return this;
+        }
+
+        public Builder withMaxConcurrentDownloads(int maxConcurrentDownloads) {
+            this.maxConcurrentDownloads = maxConcurrentDownloads;
+            return this;
+        }
+
+        /**
+         * Store bulk data drops gzipped. {@link ScryfallParser} reads them either way.
+         */
+        public Builder withCompressedStorage(boolean compressedStorage) {
+            this.compressedStorage = compressedStorage;
+            return this;
+        }
+
+        /**
+         * Set the root of the Scryfall API, such as a local stand-in server. The bulk data files themselves are
+         * downloaded from wherever the API's bulk data listing points.
+         */
+        public Builder withApiBaseUri(URI apiBaseUri) {
+            this.apiBaseUri = apiBaseUri;
+            return this;
+        }
+
         public Builder setDownloadReport(PrintStream log) {
             this.log = log;
             return this;
@@ -129,55 +270,409 @@ public class ScryfallFetcher {
     }
 
 
+    private static final URI DEFAULT_API_BASE_URI = URI.create("https://api.scryfall.com/");
     private static final DateTimeFormatter FILENAME_TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneOffset.UTC);
+    private static final String CURRENT = "current";
+    private static final String STAGING = "staging";
+    private static final String OVERLAY_STAGING = "overlay-staging";
+    private static final String OVERLAY_INFIX = "-overlay-";
+    private static final Pattern DROP_DIRECTORY_NAME = Pattern.compile(
+            "\\d{14}(" + Pattern.quote(OVERLAY_INFIX) + "\\d{14})?(-\\d+)?");
     private static final String MANIFEST_JSON = "manifest.json";
     private static final String SETS_JSON = "sets.json";
+    private static final String OVERLAY_JSON = "overlay.json";
+    private static final String PARTIAL_SUFFIX = ".part";
+    private static final String VERSION_SUFFIX = ".version";
+    private static final String GZIP_SUFFIX = ".gz";
 
     private void log(String message) {
         log.ifPresent(ps -> ps.println(message));
     }
 
+    /**
+     * Make sure that the local drop is up to date, downloading a new one if it is stale.
+     * <p>
+     * A new drop is downloaded into a staging directory and verified before it is installed. Then {@code current},
+     * which is a symbolic link, is switched to it in a single rename, so that a reader of {@code current} sees either
+     * all of the old drop or all of the new one. If the download fails, the old drop stays current, and the next
+     * refresh resumes the download from the staging directory. A staged drop that was completely downloaded is only
+     * installed if every file still matches the SHA-256 in its manifest; of an incomplete one, only partial files of
+     * the drops in the current listing are kept, and each of those is continued only if its version is unchanged.
+     *
+     * @return the directory of the current drop, with {@code current} resolved so that the caller keeps reading the
+     *         same drop even if another refresh replaces it; a replaced drop is only deleted when the drop after it is
+     *         replaced in turn
+     */
     public Path refresh() throws IOException, InterruptedException {
-        Path current = rootDirectory.resolve("current");
-        if (!Files.exists(current)) {
-            Files.createDirectories(current);
-            download(current);
-            return current;
+        Path current = rootDirectory.resolve(CURRENT);
+        Path staging = rootDirectory.resolve(STAGING);
+        if (Files.exists(staging)) {
+            log("Resuming incomplete download in " + staging);
+            return downloadAndInstall(staging);
         }
-
         Path manifestPath = current.resolve(MANIFEST_JSON);
-        Map<?, ?> manifest;
-        try (Reader manifestReader = Files.newBufferedReader(manifestPath)) {
-            manifest = new Gson().fromJson(manifestReader, Map.class);
+        if (!Files.exists(manifestPath)) {
+            // Either there is no drop yet, or an older version of this class was interrupted while downloading it
+            return downloadAndInstall(staging);
         }
+
+        Map<String, Object> manifest = readManifest(manifestPath);
         Instant timestamp = Instant.parse((String) manifest.get("latestUpdated"));
-        if (Duration.between(timestamp, clock.instant()).compareTo(refreshInterval) >= 0) {
-            if (keepOldDownloads) {
-                Path archiveDestination = rootDirectory.resolve(FILENAME_TIMESTAMP_FORMATTER.format(timestamp));
-                Files.move(current, archiveDestination);
-            } else {
-                for (Path file : Files.list(current).collect(Collectors.toList())) {
-                    Files.delete(file);
-                    log("Deleting: " + file);
+        boolean isStale;
+        if (manifest.containsKey("dropValidators")) {
+            Instant checkedTime = Instant.parse((String) manifest.get("checkedTime"));
+            if (Duration.between(checkedTime, clock.instant()).compareTo(checkInterval) < 0) {
+                return current.toRealPath();
+            }
+            isStale = !checkUnchanged(manifest);
+            if (!isStale) {
+                manifest.put("checkedTime", clock.instant().toString());
+                writeManifest(manifestPath, manifest);
+            }
+        } else {
+            isStale = Duration.between(timestamp, clock.instant()).compareTo(refreshInterval) >= 0;
+        }
+        return isStale ? downloadAndInstall(staging) : current.toRealPath();
+    }
+
+    private Path downloadAndInstall(Path staging) throws IOException, InterruptedException {
+        if (Files.exists(staging.resolve(MANIFEST_JSON)) && !matchesChecksums(staging)) {
+            log("Discarding " + staging + ", which does not match its manifest");
+            MoreFiles.deleteRecursively(staging, RecursiveDeleteOption.ALLOW_INSECURE);
+        }
+        Files.createDirectories(staging);
+        if (!Files.exists(staging.resolve(MANIFEST_JSON))) {
+            BulkDataDropSet dropSet = fetchDropSet(Validators.NONE).orElseThrow();
+            discardStaleFiles(staging, dropSet);
+            download(staging, dropSet);
+        }
+        return install(staging);
+    }
+
+    /**
+     * @return whether every file in a staged drop has the SHA-256 and size that its manifest recorded
+     */
+    private static boolean matchesChecksums(Path staging) throws IOException {
+        Map<?, ?> checksums = (Map<?, ?>) readManifest(staging.resolve(MANIFEST_JSON)).get("checksums");
+        if (checksums == null) return false;
+        for (Map.Entry<?, ?> entry : checksums.entrySet()) {
+            Path file = staging.resolve((String) entry.getKey());
+            if (!Files.isRegularFile(file)) return false;
+            Map<String, Object> actual = FileDigest.ofExisting(file).toJson();
+            Map<?, ?> expected = (Map<?, ?>) entry.getValue();
+            if (!actual.get("sha256").equals(expected.get("sha256"))
+                    || ((Number) actual.get("size")).longValue() != ((Number) expected.get("size")).longValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Delete everything from an incompletely downloaded staging directory except the partial files of drops in the
+     * current listing, which may be from an earlier listing than the one being downloaded now.
+     */
+    private void discardStaleFiles(Path staging, BulkDataDropSet dropSet) throws IOException {
+        String suffix = compressedStorage ? GZIP_SUFFIX : "";
+        Set<String> partialFiles = new TreeSet<>();
+        partialFiles.add(SETS_JSON + PARTIAL_SUFFIX);
+        for (BulkDataDrop drop : dropSet.getDrops()) {
+            if (typeFilter.test(drop.type)) {
+                partialFiles.add(drop.extractFilename() + suffix + PARTIAL_SUFFIX);
+            }
+        }
+        try (Stream<Path> files = Files.list(staging)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                String partialName = name.endsWith(VERSION_SUFFIX)
+                        ? name.substring(0, name.length() - VERSION_SUFFIX.length())
+                        : name;
+                if (!partialFiles.contains(partialName)) {
+                    log("Discarding stale file " + file);
+                    MoreFiles.deleteRecursively(file, RecursiveDeleteOption.ALLOW_INSECURE);
                 }
+            }
+        }
+    }
+
+    /**
+     * Check that each file in a staged drop is the size that was recorded as it was downloaded, then make the drop
+     * current. The drop's directory is named for its timestamp, and older ones are kept or deleted as described by
+     * {@link #publish}.
+     */
+    private Path install(Path staging) throws IOException {
+        Map<String, Object> manifest = readManifest(staging.resolve(MANIFEST_JSON));
+        Map<?, ?> checksums = (Map<?, ?>) manifest.get("checksums");
+        if (checksums != null) {
+            for (Map.Entry<?, ?> entry : checksums.entrySet()) {
+                Path file = staging.resolve((String) entry.getKey());
+                long expectedSize = ((Number) ((Map<?, ?>) entry.getValue()).get("size")).longValue();
+                if (!Files.exists(file) || Files.size(file) != expectedSize) {
+                    throw new IOException(String.format("%s is not the %d bytes that were downloaded",
+                            file, expectedSize));
+                }
+            }
+        }
+        Instant timestamp = Instant.parse((String) manifest.get("latestUpdated"));
+        return publish(staging, FILENAME_TIMESTAMP_FORMATTER.format(timestamp));
+    }
+
+    /**
+     * Move a complete drop into the root directory under a name, then make it current. The drop it replaces stays
+     * until the next publish; after that it is kept or deleted according to {@link Builder#withKeepOldDownloads},
+     * except that one that only differs by its overlay is always deleted.
+     */
+    private Path publish(Path staged, String name) throws IOException {
+        Path version = rootDirectory.resolve(name);
+        for (int i = 2; Files.exists(version, LinkOption.NOFOLLOW_LINKS); i++) {
+            version = rootDirectory.resolve(name + "-" + i);
+        }
+        Files.move(staged, version, StandardCopyOption.ATOMIC_MOVE);
+
+        Path current = rootDirectory.resolve(CURRENT);
+        Optional<Path> previous = Optional.empty();
+        if (Files.isSymbolicLink(current)) {
+            previous = Optional.of(rootDirectory.resolve(Files.readSymbolicLink(current)));
+        } else if (Files.exists(current)) {
+            // A directory from before drops were staged can't be replaced atomically, so move it out of the way first
+            previous = Optional.of(archiveDirectory(current));
+        }
+
+        Path nextLink = rootDirectory.resolve(CURRENT + PARTIAL_SUFFIX);
+        Files.deleteIfExists(nextLink);
+        try {
+            Files.createSymbolicLink(nextLink, version.getFileName());
+            Files.move(nextLink, current, StandardCopyOption.ATOMIC_MOVE);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            // Without symbolic links, there is a moment when there is no current drop
+            log("Could not link " + current + " to " + version + " (" + e + "); renaming instead");
+            if (Files.isSymbolicLink(current)) {
                 Files.delete(current);
             }
-            Files.createDirectories(current);
-            download(current);
+            Files.move(version, current, StandardCopyOption.ATOMIC_MOVE);
+            version = current;
         }
-        return current;
+        log("Installed " + version);
+
+        deleteRetiredDrops(version, previous);
+        return version.toRealPath();
     }
 
+    /**
+     * Delete the drops that were replaced before the one that was just replaced. That one is kept until the next
+     * publish, so that a caller that was given it by {@link #refresh()} can finish reading it.
+     */
+    private void deleteRetiredDrops(Path version, Optional<Path> previous) throws IOException {
+        Set<Path> kept = new HashSet<>();
+        kept.add(version.getFileName());
+        previous.ifPresent((Path p) -> kept.add(p.getFileName()));
+        try (Stream<Path> files = Files.list(rootDirectory)) {
+            for (Path drop : (Iterable<Path>) files::iterator) {
+                String name = drop.getFileName().toString();
+                if (kept.contains(drop.getFileName()) || !DROP_DIRECTORY_NAME.matcher(name).matches()
+                        || !Files.isDirectory(drop, LinkOption.NOFOLLOW_LINKS)) {
+                    continue;
+                }
+                if (!keepOldDownloads || name.contains(OVERLAY_INFIX)) {
+                    log("Deleting: " + drop);
+                    MoreFiles.deleteRecursively(drop, RecursiveDeleteOption.ALLOW_INSECURE);
+                }
+            }
+        }
+    }
+
+    private Path archiveDirectory(Path directory) throws IOException {
+        String name = FILENAME_TIMESTAMP_FORMATTER.format(Files.getLastModifiedTime(directory).toInstant());
+        Path archive = rootDirectory.resolve(name);
+        for (int i = 2; Files.exists(archive, LinkOption.NOFOLLOW_LINKS); i++) {
+            archive = rootDirectory.resolve(name + "-" + i);
+        }
+        Files.move(directory, archive, StandardCopyOption.ATOMIC_MOVE);
+        return archive;
+    }
+
+    /**
+     * Check with conditional requests whether the drops recorded in a manifest are still current. If the bulk data
+     * listing has not changed, this takes a single request that returns 304.
+     */
+    private boolean checkUnchanged(Map<String, Object> manifest) throws IOException, InterruptedException {
+        Validators listingValidators = Validators.fromJson((Map<?, ?>) manifest.get("listingValidators"));
+        Optional<BulkDataDropSet> changedDropSet = fetchDropSet(listingValidators);
+        if (changedDropSet.isEmpty()) {
+            log("Bulk data listing is unchanged");
+            return true;
+        }
+
+        // The listing changed, but perhaps only for drops that we don't download
+        Map<?, ?> dropValidators = (Map<?, ?>) manifest.get("dropValidators");
+        for (BulkDataDrop drop : changedDropSet.get().getDrops()) {
+            if (!typeFilter.test(drop.type)) continue;
+            Map<?, ?> recorded = (Map<?, ?>) dropValidators.get(drop.type);
+            if (recorded == null
+                    || !drop.downloadUri.toString().equals(recorded.get("uri"))
+                    || !drop.updatedAt.toString().equals(recorded.get("updatedAt"))) {
+                log("New drop: " + drop.downloadUri);
+                return false;
+            }
+            if (!isUnmodified(drop.downloadUri, Validators.fromJson(recorded))) {
+                log("Modified drop: " + drop.downloadUri);
+                return false;
+            }
+        }
+        log("Downloaded drops are unchanged");
+        manifest.put("listingValidators", changedDropSet.get().validators.toJson());
+        return true;
+    }
+
+    private boolean isUnmodified(URI uri, Validators validators) throws IOException, InterruptedException {
+        if (validators.isEmpty()) return false;
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).method("HEAD", HttpRequest.BodyPublishers.noBody());
+        validators.addConditions(request);
+        HttpResponse<Void> response = sendWithRetries(request.build(), HttpResponse.BodyHandlers.discarding(),
+                body -> 0L);
+        if (response.statusCode() == 304) {
+            return true;
+        }
+        checkStatus(response);
+        return false;
+    }
+
+    private static final Duration MAX_RETRY_BACKOFF = Duration.ofMinutes(1);
+
+    private static boolean isRetryable(int statusCode) {
+        return statusCode == 429 || statusCode == 408 || statusCode == 500
+                || statusCode == 502 || statusCode == 503 || statusCode == 504;
+    }
+
+    private static void checkStatus(HttpResponse<?> response) throws IOException {
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException(String.format("HTTP %d from %s", response.statusCode(), response.uri()));
+        }
+    }
+
+    private Duration getBackoff(int attempt) {
+        Duration backoff = retryBackoff.multipliedBy(1L << Math.min(attempt - 1, 20));
+        return backoff.compareTo(MAX_RETRY_BACKOFF) < 0 ? backoff : MAX_RETRY_BACKOFF;
+    }
+
+    /**
+     * How long to wait before trying a request again: as long as the server asked, or else an exponential backoff.
+     */
+    private Duration getRetryDelay(HttpHeaders headers, int attempt) {
+        Optional<String> retryAfter = headers.firstValue("Retry-After");
+        if (retryAfter.isPresent()) {
+            try {
+                return Duration.ofSeconds(Long.parseLong(retryAfter.get().trim()));
+            } catch (NumberFormatException e) {
+                try {
+                    Instant retryTime = Instant.from(DateTimeFormatter.RFC_1123_DATE_TIME.parse(retryAfter.get()));
+                    Duration untilRetry = Duration.between(clock.instant(), retryTime);
+                    return untilRetry.isNegative() ? Duration.ZERO : untilRetry;
+                } catch (DateTimeParseException ignored) {
+                    // Fall back to the backoff
+                }
+            }
+        }
+        return getBackoff(attempt);
+    }
+
+    /**
+     * Wait before retrying a request. A throttled request holds back every request through the rate limiter.
+     */
+    private void waitToRetry(HttpResponse<?> response, int attempt) throws InterruptedException {
+        Duration delay = getRetryDelay(response.headers(), attempt);
+        log(String.format("HTTP %d from %s; retrying in %s", response.statusCode(), response.uri(), delay));
+        if (response.statusCode() == 429) {
+            rateLimiter.pauseFor(delay);
+        } else {
+            Thread.sleep(delay.toMillis());
+        }
+    }
+
+    /**
+     * Send a request through the rate limiter, trying again if it is throttled, fails with a server error or loses
+     * its connection. Returns the last response, which may still be an error.
+     */
+    private <T> HttpResponse<T> sendWithRetries(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler,
+                                                ToLongFunction<? super T> bodySize)
+            throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            rateLimiter.acquire();
+            HttpTransferEvent event = new HttpTransferEvent();
+            event.begin();
+            HttpResponse<T> response = null;
+            try {
+                response = httpClient.send(request, bodyHandler);
+            } catch (IOException e) {
+                if (attempt >= maxAttempts) throw e;
+                Duration delay = getBackoff(attempt);
+                log(String.format("%s from %s; retrying in %s", e, request.uri(), delay));
+                Thread.sleep(delay.toMillis());
+                continue;
+            } finally {
+                HttpResponse<T> sent = response;
+                endTransferEvent(event, request, sent, 0L, () -> bodySize.applyAsLong(sent.body()));
+            }
+            if (!isRetryable(response.statusCode()) || attempt >= maxAttempts) {
+                return response;
+            }
+            waitToRetry(response, attempt);
+        }
+    }
+
+    /**
+     * @param response the response, or null if the request failed without one
+     * @param bytes    counts the bytes in the response's body, and is only called if there is a response
+     */
+    private static void endTransferEvent(HttpTransferEvent event, HttpRequest request, HttpResponse<?> response,
+                                         long resumedFrom, LongSupplier bytes) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.method = request.method();
+            event.uri = request.uri().toString();
+            event.failed = response == null;
+            event.status = response == null ? 0 : response.statusCode();
+            event.resumedFrom = resumedFrom;
+            event.bytes = response == null ? 0L : bytes.getAsLong();
+            event.commit();
+        }
+    }
+
+    private static Map<String, Object> readManifest(Path manifestPath) throws IOException {
+        try (Reader manifestReader = Files.newBufferedReader(manifestPath)) {
+            return new Gson().fromJson(manifestReader, Map.class);
+        }
+    }
+
+    private static void writeManifest(Path manifestPath, Map<String, Object> manifest) throws IOException {
+        writeAtomically(manifestPath, (OutputStream out) -> {
+            Writer manifestWriter = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            new GsonBuilder().setPrettyPrinting().create().toJson(manifest, manifestWriter);
+            manifestWriter.flush();
+        });
+    }
+
+    /**
+     * Download the latest drop into a directory, writing its manifest last. Each file's SHA-256 and size are recorded
+     * in the manifest, computed as the file is written.
+     */
     public void download(Path directory) throws IOException, InterruptedException {
-        BulkDataDropSet dropSet = fetchDropSet();
+        download(directory, fetchDropSet(Validators.NONE).orElseThrow());
+    }
+
+    private void download(Path directory, BulkDataDropSet dropSet) throws IOException, InterruptedException {
         Map<String, Object> files = new LinkedHashMap<>();
+        Map<String, Object> dropValidators = new LinkedHashMap<>();
+        Map<String, Object> checksums = new LinkedHashMap<>();
 
         Collection<BulkDataDrop> drops = dropSet.getDrops();
+        Map<BulkDataDrop, CompletableFuture<DownloadedFile>> dropDownloads = new LinkedHashMap<>();
+        Semaphore downloadSlots = new Semaphore(maxConcurrentDownloads);
         for (BulkDataDrop drop : drops) {
             if (typeFilter.test(drop.type)) {
-                Thread.sleep(downloadDelay.toMillis());
-                Path downloadPath = downloadDrop(drop, directory);
-                files.put(drop.type, directory.relativize(downloadPath).toString());
+                log("Downloading from " + drop.downloadUri + " to " + directory);
+                dropDownloads.put(drop, startDownload(downloadSlots,
+                        drop.downloadUri, directory, drop.extractFilename(), true, compressedStorage));
             }
         }
         Instant latestUpdated = drops.stream()
@@ -185,29 +680,456 @@ public class ScryfallFetcher {
                 .max(Comparator.naturalOrder())
                 .orElseThrow(() -> new RuntimeException("No drops found"));
 
-        Thread.sleep(downloadDelay.toMillis());
-        httpClient.send(
-                HttpRequest.newBuilder(URI.create("https://api.scryfall.com/sets/")).GET().build(),
-                HttpResponse.BodyHandlers.ofFile(directory.resolve(SETS_JSON)));
+        CompletableFuture<DownloadedFile> setsDownload = startDownload(downloadSlots,
+                apiBaseUri.resolve("sets/"), directory, SETS_JSON, false, false);
+
+        for (Map.Entry<BulkDataDrop, CompletableFuture<DownloadedFile>> entry : dropDownloads.entrySet()) {
+            BulkDataDrop drop = entry.getKey();
+            DownloadedFile download = awaitDownload(entry.getValue());
+            String filename = directory.relativize(download.path).toString();
+            if (!compressedStorage && drop.size.isPresent() && drop.size.getAsLong() != download.digest.getSize()) {
+                throw new IOException(String.format("Downloaded %d bytes of %s, but the listing has %d",
+                        download.digest.getSize(), drop.downloadUri, drop.size.getAsLong()));
+            }
+            files.put(drop.type, filename);
+            checksums.put(filename, download.digest.toJson());
+
+            Map<String, Object> validators = new LinkedHashMap<>();
+            validators.put("uri", drop.downloadUri.toString());
+            validators.put("updatedAt", drop.updatedAt.toString());
+            validators.putAll(download.validators.toJson());
+            dropValidators.put(drop.type, validators);
+        }
+        checksums.put(SETS_JSON, awaitDownload(setsDownload).digest.toJson());
         files.put("sets", SETS_JSON);
 
+        String downloadTime = clock.instant().toString();
         Map<String, Object> manifest = new LinkedHashMap<>();
-        manifest.put("downloadTime", clock.instant().toString());
+        manifest.put("downloadTime", downloadTime);
+        manifest.put("checkedTime", downloadTime);
         manifest.put("latestUpdated", latestUpdated.toString());
         manifest.put("files", files);
+        manifest.put("checksums", checksums);
+        manifest.put("listingValidators", dropSet.validators.toJson());
+        manifest.put("dropValidators", dropValidators);
         manifest.put("metadata", dropSet.metadata);
+        writeManifest(directory.resolve(MANIFEST_JSON), manifest);
+    }
 
-        Path manifestPath = directory.resolve(MANIFEST_JSON);
-        try (Writer manifestWriter = Files.newBufferedWriter(manifestPath)) {
-            new GsonBuilder().setPrettyPrinting().create().toJson(manifest, manifestWriter);
+    /**
+     * Fetch the cards of some sets through the search API and store them as an overlay on the drop in a directory, so
+     * that cards previewed since the drop was published can be loaded without waiting for the next one. The overlay
+     * replaces any cards of the same sets that an earlier overlay held, and is recorded in the manifest, from which
+     * {@link ScryfallParser} merges it over the bulk file. It lasts until {@link #refresh()} replaces the drop.
+     * <p>
+     * The set list is fetched again as well, since the drop's may not have a set that was announced after it.
+     * <p>
+     * The new set list, overlay and manifest are written into a copy of the drop, whose other files are hard links to
+     * the drop's, and {@code current} is switched to the copy in the same way as {@link #refresh()} installs a drop.
+     * So a reader of {@code current} sees all three files from either before or after the overlay. If the set list and
+     * overlay come out the same, byte for byte, as the ones already in the drop, the copy is discarded instead and the
+     * drop stays current.
+     *
+     * @param directory the current drop, as returned by {@link #refresh()}
+     * @param setCodes  Scryfall set codes, such as {@code "mh3"}
+     * @return the directory of the drop with the overlay, which replaces {@code directory} as the current drop unless
+     *         nothing changed, in which case it is {@code directory} itself
+     * @throws IllegalArgumentException if the directory is not the current drop
+     */
+    public Path fetchSetOverlay(Path directory, Collection<String> setCodes) throws IOException, InterruptedException {
+        return writeOverlay(directory, sets -> setCodes);
+    }
+
+    /**
+     * Fetch an overlay of every set released within a window before now or not yet released, which are the sets that
+     * a drop is most likely to be missing cards from.
+     *
+     * @see #fetchSetOverlay
+     */
+    public Path fetchRecentSetOverlay(Path directory, Duration window) throws IOException, InterruptedException {
+        LocalDate cutoff = LocalDate.ofInstant(clock.instant().minus(window), ZoneOffset.UTC);
+        return writeOverlay(directory, (List<?> sets) -> {
+            List<String> recentSetCodes = sets.stream()
+                    .map(set -> (Map<?, ?>) set)
+                    .filter(set -> set.get("released_at") != null
+                            && !LocalDate.parse((String) set.get("released_at")).isBefore(cutoff))
+                    .map(set -> (String) set.get("code"))
+                    .collect(Collectors.toList());
+            log("Recent sets: " + recentSetCodes);
+            return recentSetCodes;
+        });
+    }
+
+    /**
+     * @param setChooser picks the codes of the sets to fetch from the set list
+     */
+    private Path writeOverlay(Path directory, Function<List<?>, Collection<String>> setChooser)
+            throws IOException, InterruptedException {
+        Path current = rootDirectory.resolve(CURRENT);
+        if (!Files.exists(current) || !Files.isSameFile(current, directory)) {
+            throw new IllegalArgumentException(directory + " is not the current drop in " + rootDirectory);
+        }
+        Path staging = rootDirectory.resolve(OVERLAY_STAGING);
+        if (Files.exists(staging, LinkOption.NOFOLLOW_LINKS)) {
+            MoreFiles.deleteRecursively(staging, RecursiveDeleteOption.ALLOW_INSECURE);
+        }
+        Files.createDirectory(staging);
+        linkUnchangedFiles(directory, staging);
+
+        Map<String, Object> manifest = readManifest(directory.resolve(MANIFEST_JSON));
+        Map<String, Object> checksums = Optional.ofNullable((Map<String, Object>) manifest.get("checksums"))
+                .orElseGet(LinkedHashMap::new);
+        Map<String, Object> previousChecksums = new LinkedHashMap<>(checksums);
+
+        HttpRequest setsRequest = HttpRequest.newBuilder(apiBaseUri.resolve("sets/")).GET().build();
+        HttpResponse<byte[]> setsResponse = sendWithRetries(setsRequest, HttpResponse.BodyHandlers.ofByteArray(),
+                body -> body.length);
+        checkStatus(setsResponse);
+        Map<String, Object> setsDigest = writeAtomically(staging.resolve(SETS_JSON),
+                out -> out.write(setsResponse.body())).toJson();
+        checksums.put(SETS_JSON, setsDigest);
+        Map<?, ?> sets = new Gson().fromJson(new String(setsResponse.body(), StandardCharsets.UTF_8), Map.class);
+
+        Set<String> fetchedSets = setChooser.apply((List<?>) sets.get("data")).stream()
+                .map(code -> code.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toCollection(TreeSet::new));
+
+        Path previousOverlayPath = directory.resolve(OVERLAY_JSON);
+        Set<String> overlaySets = new TreeSet<>(fetchedSets);
+        // Ordered by set, so that fetching the same cards again writes the same file
+        ListMultimap<String, JsonElement> overlayBySet = MultimapBuilder.treeKeys().arrayListValues().build();
+        Map<?, ?> previousOverlay = (Map<?, ?>) manifest.get("overlay");
+        if (previousOverlay != null && Files.exists(previousOverlayPath)) {
+            ((List<?>) previousOverlay.get("sets")).forEach(code -> overlaySets.add((String) code));
+            JsonArray previousCards;
+            try (Reader reader = Files.newBufferedReader(previousOverlayPath)) {
+                previousCards = new Gson().fromJson(reader, JsonArray.class);
+            }
+            for (JsonElement card : previousCards) {
+                String setCode = card.getAsJsonObject().get("set").getAsString();
+                if (!fetchedSets.contains(setCode)) {
+                    overlayBySet.put(setCode, card);
+                }
+            }
+        }
+        for (String setCode : fetchedSets) {
+            int count = searchSet(setCode, (JsonElement card) -> overlayBySet.put(setCode, card));
+            log(String.format("Fetched %d cards from %s", count, setCode));
+        }
+        JsonArray overlay = new JsonArray();
+        overlayBySet.values().forEach(overlay::add);
+
+        Map<String, Object> overlayDigest = writeAtomically(staging.resolve(OVERLAY_JSON), (OutputStream out) -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            new Gson().toJson(overlay, writer);
+            writer.flush();
+        }).toJson();
+        checksums.put(OVERLAY_JSON, overlayDigest);
+
+        if (previousOverlay != null && Files.exists(previousOverlayPath)
+                && ((List<?>) previousOverlay.get("sets")).containsAll(overlaySets)
+                && hasSameSha256(previousChecksums.get(SETS_JSON), setsDigest)
+                && hasSameSha256(previousChecksums.get(OVERLAY_JSON), overlayDigest)) {
+            log("Overlay is unchanged; keeping " + directory);
+            MoreFiles.deleteRecursively(staging, RecursiveDeleteOption.ALLOW_INSECURE);
+            return directory.toRealPath();
+        }
+
+        Instant fetchedTime = clock.instant();
+        Map<String, Object> overlayManifest = new LinkedHashMap<>();
+        overlayManifest.put("file", OVERLAY_JSON);
+        overlayManifest.put("sets", overlaySets);
+        overlayManifest.put("fetchedTime", fetchedTime.toString());
+        overlayManifest.put("entries", overlay.size());
+        manifest.put("overlay", overlayManifest);
+        manifest.put("checksums", checksums);
+        writeManifest(staging.resolve(MANIFEST_JSON), manifest);
+
+        Instant timestamp = Instant.parse((String) manifest.get("latestUpdated"));
+        return publish(staging, FILENAME_TIMESTAMP_FORMATTER.format(timestamp) + OVERLAY_INFIX
+                + FILENAME_TIMESTAMP_FORMATTER.format(fetchedTime));
+    }
+
+    private static boolean hasSameSha256(Object recordedDigest, Map<String, Object> digest) {
+        return recordedDigest instanceof Map && digest.get("sha256").equals(((Map<?, ?>) recordedDigest).get("sha256"));
+    }
+
+    /**
+     * Fill a copy of a drop with hard links to the files that an overlay doesn't replace, or with copies of them if
+     * the file system can't link them. Files that are rewritten in place, rather than replaced by a rename, are left
+     * out so that writing to one copy can't change the other.
+     */
+    private static void linkUnchangedFiles(Path drop, Path copy) throws IOException {
+        Set<String> excluded = Set.of(MANIFEST_JSON, SETS_JSON, OVERLAY_JSON, IngestionReport.FILENAME);
+        try (Stream<Path> files = Files.list(drop)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (excluded.contains(name) || name.endsWith(PARTIAL_SUFFIX) || name.endsWith(".tmp")
+                        || !Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
+                    continue;
+                }
+                try {
+                    Files.createLink(copy.resolve(name), file);
+                } catch (UnsupportedOperationException | FileSystemException e) {
+                    Files.copy(file, copy.resolve(name));
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private static interface FileContent {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Replace a file in a single rename, so that a reader never sees it half-written.
+     */
+    private static FileDigest writeAtomically(Path file, FileContent content) throws IOException {
+        Path partialFile = file.resolveSibling(file.getFileName() + PARTIAL_SUFFIX);
+        FileDigest digest = FileDigest.create();
+        try (OutputStream out = digest.wrap(new BufferedOutputStream(Files.newOutputStream(partialFile)))) {
+            content.writeTo(out);
+        }
+        Files.move(partialFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return digest;
+    }
+
+    /**
+     * Page through a search for every printing in a set, in the same form as the entries in the bulk file.
+     *
+     * @return the number of cards found
+     */
+    private int searchSet(String setCode, Consumer<JsonElement> cardConsumer) throws IOException, InterruptedException {
+        URI pageUri = apiBaseUri.resolve("cards/search?include_extras=true&include_variations=true&order=set&q="
+                + URLEncoder.encode("e:" + setCode, StandardCharsets.UTF_8) + "&unique=prints");
+        int count = 0;
+        while (true) {
+            HttpResponse<String> response = sendWithRetries(HttpRequest.newBuilder(pageUri).GET().build(),
+                    HttpResponse.BodyHandlers.ofString(), body -> body.getBytes(StandardCharsets.UTF_8).length);
+            if (response.statusCode() == 404 && count == 0) {
+                // The search API reports a search that matches nothing as not found
+                return 0;
+            }
+            checkStatus(response);
+            JsonObject page = new Gson().fromJson(response.body(), JsonObject.class);
+            for (JsonElement card : page.getAsJsonArray("data")) {
+                cardConsumer.accept(card);
+                count++;
+            }
+            if (!page.has("has_more") || !page.get("has_more").getAsBoolean()) {
+                return count;
+            }
+            pageUri = URI.create(page.get("next_page").getAsString());
+        }
+    }
+
+    /**
+     * The headers that a server provided to identify a version of a resource, for use in conditional requests.
+     */
+    private static final class Validators {
+        private static final Validators NONE = new Validators(Optional.empty(), Optional.empty());
+
+        private final Optional<String> etag;
+        private final Optional<String> lastModified;
+
+        private Validators(Optional<String> etag, Optional<String> lastModified) {
+            this.etag = Objects.requireNonNull(etag);
+            this.lastModified = Objects.requireNonNull(lastModified);
+        }
+
+        static Validators fromHeaders(HttpHeaders headers) {
+            return new Validators(headers.firstValue("ETag"), headers.firstValue("Last-Modified"));
+        }
+
+        static Validators fromJson(Map<?, ?> json) {
+            if (json == null) return NONE;
+            return new Validators(Optional.ofNullable((String) json.get("etag")),
+                    Optional.ofNullable((String) json.get("lastModified")));
+        }
+
+        Map<String, Object> toJson() {
+            Map<String, Object> json = new LinkedHashMap<>();
+            etag.ifPresent(v -> json.put("etag", v));
+            lastModified.ifPresent(v -> json.put("lastModified", v));
+            return json;
+        }
+
+        boolean isEmpty() {
+            return etag.isEmpty() && lastModified.isEmpty();
+        }
+
+        /**
+         * @return the value for an {@code If-Range} header, which must be a strong ETag or a date
+         */
+        Optional<String> getRangeCondition() {
+            Optional<String> strongEtag = etag.filter(v -> !v.startsWith("W/"));
+            return strongEtag.isPresent() ? strongEtag : lastModified;
+        }
+
+        /**
+         * @return whether a response with these validators has the same version of the resource as {@code other}
+         */
+        boolean isSameVersion(Validators other) {
+            if (etag.isPresent() && other.etag.isPresent()) {
+                return etag.equals(other.etag);
+            }
+            return lastModified.isPresent() && lastModified.equals(other.lastModified);
+        }
+
+        void addConditions(HttpRequest.Builder request) {
+            etag.ifPresent(v -> request.header("If-None-Match", v));
+            lastModified.ifPresent(v -> request.header("If-Modified-Since", v));
+        }
+    }
+
+    private static final class DownloadedFile {
+        private final Path path;
+        private final Validators validators;
+        private final FileDigest digest;
+
+        private DownloadedFile(Path path, Validators validators, FileDigest digest) {
+            this.path = Objects.requireNonNull(path);
+            this.validators = Objects.requireNonNull(validators);
+            this.digest = Objects.requireNonNull(digest);
+        }
+    }
+
+    /**
+     * The SHA-256 and size of a file, accumulated from the bytes as they are written to it.
+     */
+    private static final class FileDigest {
+        private final MessageDigest sha256;
+        private long size;
+
+        private FileDigest(MessageDigest sha256, long size) {
+            this.sha256 = sha256;
+            this.size = size;
+        }
+
+        static FileDigest create() {
+            try {
+                return new FileDigest(MessageDigest.getInstance("SHA-256"), 0L);
+            } catch (NoSuchAlgorithmException e) {
+                // Every Java platform is required to support SHA-256
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * Digest the part of a file that an interrupted download already wrote, to continue from.
+         */
+        static FileDigest ofExisting(Path file) throws IOException {
+            FileDigest digest = create();
+            try (InputStream input = Files.newInputStream(file)) {
+                byte[] buffer = new byte[1 << 16];
+                int read;
+                while ((read = input.read(buffer)) >= 0) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+            return digest;
+        }
+
+        FileDigest copy() {
+            try {
+                return new FileDigest((MessageDigest) sha256.clone(), size);
+            } catch (CloneNotSupportedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        void update(byte[] bytes, int offset, int length) {
+            sha256.update(bytes, offset, length);
+            size += length;
+        }
+
+        void update(ByteBuffer buffer) {
+            size += buffer.remaining();
+            sha256.update(buffer.duplicate());
+        }
+
+        /**
+         * Wrap a stream so that everything written to it is added to this digest.
+         */
+        OutputStream wrap(OutputStream out) {
+            return new FilterOutputStream(out) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    sha256.update((byte) b);
+                    size++;
+                }
+
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                    out.write(bytes, offset, length);
+                    update(bytes, offset, length);
+                }
+            };
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        /**
+         * Finish the digest. Nothing more can be added to it afterward.
+         */
+        Map<String, Object> toJson() {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("sha256", BaseEncoding.base16().lowerCase().encode(sha256.digest()));
+            json.put("size", size);
+            return json;
+        }
+    }
+
+    /**
+     * Passes a response body to another subscriber, adding it to a digest on the way.
+     */
+    private static final class DigestingSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+        private final HttpResponse.BodySubscriber<T> delegate;
+        private final FileDigest digest;
+
+        private DigestingSubscriber(HttpResponse.BodySubscriber<T> delegate, FileDigest digest) {
+            this.delegate = Objects.requireNonNull(delegate);
+            this.digest = Objects.requireNonNull(digest);
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            delegate.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            buffers.forEach(digest::update);
+            delegate.onNext(buffers);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            delegate.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            delegate.onComplete();
         }
     }
 
     private static final class BulkDataDropSet {
         private final List<?> metadata;
+        private final Validators validators;
 
-        public BulkDataDropSet(List<?> metadata) {
+        public BulkDataDropSet(List<?> metadata, Validators validators) {
             this.metadata = Objects.requireNonNull(metadata);
+            this.validators = Objects.requireNonNull(validators);
         }
 
         public ImmutableList<BulkDataDrop> getDrops() {
@@ -221,11 +1143,14 @@ public class ScryfallFetcher {
         private final String type;
         private final Instant updatedAt;
         private final URI downloadUri;
+        private final OptionalLong size;
 
         public BulkDataDrop(Map<?, ?> data) {
             type = (String) Objects.requireNonNull(data.get("type"));
             updatedAt = Instant.parse((String) data.get("updated_at"));
             downloadUri = URI.create((String) data.get("download_uri"));
+            size = data.get("size") instanceof Number ? OptionalLong.of(((Number) data.get("size")).longValue())
+                    : OptionalLong.empty();
         }
 
         private String extractFilename() {
@@ -235,26 +1160,313 @@ public class ScryfallFetcher {
         }
     }
 
-    private BulkDataDropSet fetchDropSet() throws IOException, InterruptedException {
-        HttpRequest bulkDataReq = HttpRequest.newBuilder(URI.create("https://api.scryfall.com/bulk-data")).GET().build();
-        HttpResponse<String> bulkDataResponse = httpClient.send(bulkDataReq, HttpResponse.BodyHandlers.ofString());
+    /**
+     * @return the drop set, or empty if the server reports that it is unchanged since the given validators
+     */
+    private Optional<BulkDataDropSet> fetchDropSet(Validators validators) throws IOException, InterruptedException {
+        HttpRequest.Builder bulkDataReq = HttpRequest.newBuilder(apiBaseUri.resolve("bulk-data")).GET();
+        validators.addConditions(bulkDataReq);
+        HttpResponse<String> bulkDataResponse = sendWithRetries(bulkDataReq.build(),
+                HttpResponse.BodyHandlers.ofString(), body -> body.getBytes(StandardCharsets.UTF_8).length);
+        if (bulkDataResponse.statusCode() == 304 && !validators.isEmpty()) {
+            return Optional.empty();
+        }
+        checkStatus(bulkDataResponse);
         Map<?, ?> bulkDataBody = new Gson().fromJson(bulkDataResponse.body(), Map.class);
-        return new BulkDataDropSet((List<?>) bulkDataBody.get("data"));
+        return Optional.of(new BulkDataDropSet((List<?>) bulkDataBody.get("data"),
+                Validators.fromHeaders(bulkDataResponse.headers())));
+    }
+
+    /**
+     * Wait for a free download slot, then start downloading a file. The slot is released when the download finishes.
+     */
+    private CompletableFuture<DownloadedFile> startDownload(Semaphore downloadSlots, URI uri, Path location,
+                                                            String defaultFilename, boolean useServerFilename,
+                                                            boolean compress)
+            throws InterruptedException {
+        downloadSlots.acquire();
+        CompletableFuture<DownloadedFile> download;
+        try {
+            download = downloadResumably(uri, location, defaultFilename, useServerFilename, compress, 1);
+        } catch (IOException | RuntimeException e) {
+            downloadSlots.release();
+            return CompletableFuture.failedFuture(e);
+        } catch (InterruptedException e) {
+            downloadSlots.release();
+            throw e;
+        }
+        return download.whenComplete((DownloadedFile file, Throwable error) -> downloadSlots.release());
+    }
+
+    private static DownloadedFile awaitDownload(CompletableFuture<DownloadedFile> download) throws IOException, InterruptedException {
+        try {
+            return download.get();
+        } catch (ExecutionException e) {
+            Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Download a file into a partial file next to its destination, and move it into place when it is complete. If a
+     * partial file is already there from an interrupted download, request only the bytes after it. Only a successful
+     * response is written to the partial file, so an error response never replaces a file.
+     * <p>
+     * A compressed download is stored gzipped, with a {@code .gz} suffix. If the server does not send it gzipped, it
+     * is compressed while it is written. A partial compressed file can't be reliably continued, so a compressed
+     * download always starts over.
+     * <p>
+     * The partial file's version is recorded next to it from the server's {@code ETag} or {@code Last-Modified}
+     * header. A continuation is requested with {@code If-Range}, so if the file has changed on the server since, the
+     * server sends the whole new version instead. A partial file whose version is unknown is discarded.
+     * <p>
+     * If the request is throttled, fails with a server error or loses its connection, it is tried again after a
+     * delay, continuing from whatever was written to the partial file.
+     *
+     * @param defaultFilename   names the partial file, and the destination unless the server provides a name
+     * @param useServerFilename whether to take the destination's name from the {@code x-bz-file-name} header
+     * @param attempt           counts from 1
+     */
+    private CompletableFuture<DownloadedFile> downloadResumably(URI uri, Path location, String defaultFilename,
+                                                                boolean useServerFilename, boolean compress,
+                                                                int attempt)
+            throws IOException, InterruptedException {
+        String suffix = compress ? GZIP_SUFFIX : "";
+        Path partialFile = location.resolve(defaultFilename + suffix + PARTIAL_SUFFIX);
+        Path versionFile = partialFile.resolveSibling(partialFile.getFileName() + VERSION_SUFFIX);
+        Validators partialVersion = readPartialVersion(versionFile);
+        Optional<String> rangeCondition = partialVersion.getRangeCondition();
+        if (compress || rangeCondition.isEmpty()) {
+            // Without knowing which version of the file it came from, a partial file can't be safely continued
+            Files.deleteIfExists(partialFile);
+            Files.deleteIfExists(versionFile);
+        }
+        long resumeFrom = Files.exists(partialFile) ? Files.size(partialFile) : 0L;
+        FileDigest resumedDigest = resumeFrom > 0 ? FileDigest.ofExisting(partialFile) : null;
+        FileDigest[] digest = new FileDigest[1];
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).GET();
+        if (resumeFrom > 0) {
+            log(String.format("Resuming %s from byte %d", uri, resumeFrom));
+            request.header("Range", "bytes=" + resumeFrom + "-");
+            request.header("If-Range", rangeCondition.get());
+        }
+        if (compress) {
+            request.header("Accept-Encoding", "gzip");
+        }
+        HttpRequest httpRequest = request.build();
+        rateLimiter.acquire();
+        HttpTransferEvent event = new HttpTransferEvent();
+        event.begin();
+        return httpClient.sendAsync(httpRequest, (HttpResponse.ResponseInfo responseInfo) -> {
+            String filename = useServerFilename
+                    ? responseInfo.headers().firstValue("x-bz-file-name").orElse(defaultFilename)
+                    : defaultFilename;
+            Path destination = location.resolve(Path.of(filename).getFileName() + suffix);
+            boolean isGzipped = responseInfo.headers().firstValue("Content-Encoding")
+                    .filter("gzip"::equalsIgnoreCase).isPresent();
+            HttpResponse.BodySubscriber<Path> body;
+            if (responseInfo.statusCode() == 206 && isContinuation(responseInfo, resumeFrom)
+                    && Validators.fromHeaders(responseInfo.headers()).isSameVersion(partialVersion)) {
+                digest[0] = resumedDigest.copy();
+                body = new DigestingSubscriber<>(HttpResponse.BodySubscribers.ofFile(partialFile,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND), digest[0]);
+            } else if (responseInfo.statusCode() == 200 && compress && !isGzipped) {
+                recordPartialVersion(versionFile, Validators.fromHeaders(responseInfo.headers()));
+                digest[0] = FileDigest.create();
+                body = HttpResponse.BodySubscribers.fromSubscriber(new GzipFileSubscriber(partialFile, digest[0]),
+                        GzipFileSubscriber::getResult);
+            } else if (responseInfo.statusCode() == 200) {
+                recordPartialVersion(versionFile, Validators.fromHeaders(responseInfo.headers()));
+                digest[0] = FileDigest.create();
+                body = new DigestingSubscriber<>(HttpResponse.BodySubscribers.ofFile(partialFile,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING),
+                        digest[0]);
+            } else {
+                return HttpResponse.BodySubscribers.replacing(null);
+            }
+            return HttpResponse.BodySubscribers.mapping(body, (Path written) -> destination);
+        }).handle((HttpResponse<Path> response, Throwable error) -> {
+            boolean continued = response != null && response.statusCode() == 206;
+            endTransferEvent(event, httpRequest, response, continued ? resumeFrom : 0L,
+                    () -> response.body() == null ? 0L : digest[0].getSize() - (continued ? resumeFrom : 0L));
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                if (cause instanceof IOException && attempt < maxAttempts) {
+                    Duration delay = getBackoff(attempt);
+                    log(String.format("%s from %s; retrying in %s", cause, uri, delay));
+                    return retryDownload(delay, uri, location, defaultFilename, useServerFilename, compress, attempt);
+                }
+                return CompletableFuture.<DownloadedFile>failedFuture(cause);
+            }
+            try {
+                if (response.body() != null) {
+                    if (Files.size(partialFile) != digest[0].getSize()) {
+                        throw new IOException(String.format("%s has %d bytes, but %d were written to it",
+                                partialFile, Files.size(partialFile), digest[0].getSize()));
+                    }
+                    Files.move(partialFile, response.body(), StandardCopyOption.REPLACE_EXISTING);
+                    Files.deleteIfExists(versionFile);
+                    return CompletableFuture.completedFuture(new DownloadedFile(response.body(),
+                            Validators.fromHeaders(response.headers()), digest[0]));
+                } else if (isRetryable(response.statusCode()) && attempt < maxAttempts) {
+                    Duration delay = getRetryDelay(response.headers(), attempt);
+                    log(String.format("HTTP %d from %s; retrying in %s", response.statusCode(), uri, delay));
+                    if (response.statusCode() == 429) {
+                        rateLimiter.pauseFor(delay);
+                    }
+                    return retryDownload(delay, uri, location, defaultFilename, useServerFilename, compress, attempt);
+                } else if (resumeFrom > 0) {
+                    // The server could not continue the partial file, so start over
+                    log(String.format("Could not resume %s (HTTP %d); restarting", uri, response.statusCode()));
+                    Files.delete(partialFile);
+                    Files.deleteIfExists(versionFile);
+                    return retryDownload(Duration.ZERO, uri, location, defaultFilename, useServerFilename, compress,
+                            attempt);
+                } else {
+                    throw new IOException(String.format("HTTP %d from %s", response.statusCode(), uri));
+                }
+            } catch (IOException e) {
+                return CompletableFuture.<DownloadedFile>failedFuture(e);
+            }
+        }).thenCompose(Function.identity());
     }
 
-    private Path downloadDrop(BulkDataDrop drop, Path location) throws IOException, InterruptedException {
-        log("Downloading from " + drop.downloadUri + " to " + location);
-        HttpResponse<Path> response = httpClient.send(
-                HttpRequest.newBuilder(drop.downloadUri).GET().build(),
-                (HttpResponse.ResponseInfo responseInfo) -> {
-                    String filename = responseInfo.headers().firstValue("x-bz-file-name").orElseGet(drop::extractFilename);
-                    Path destination = location.resolve(Path.of(filename).getFileName());
-                    return HttpResponse.BodyHandlers.ofFile(destination).apply(responseInfo);
-                });
-        return response.body();
+    private static Validators readPartialVersion(Path versionFile) throws IOException {
+        if (!Files.exists(versionFile)) return Validators.NONE;
+        try (Reader reader = Files.newBufferedReader(versionFile)) {
+            return Validators.fromJson(new Gson().fromJson(reader, Map.class));
+        } catch (RuntimeException e) {
+            return Validators.NONE;
+        }
+    }
+
+    /**
+     * Note which version of a file is being written to its partial file, so that a later attempt only continues it
+     * with bytes from the same version.
+     */
+    private void recordPartialVersion(Path versionFile, Validators validators) {
+        try {
+            if (validators.getRangeCondition().isPresent()) {
+                Files.writeString(versionFile, new Gson().toJson(validators.toJson()));
+            } else {
+                Files.deleteIfExists(versionFile);
+            }
+        } catch (IOException e) {
+            // Without a version, the partial file will be discarded instead of continued
+            log(String.format("Could not record the version of %s: %s", versionFile, e));
+            versionFile.toFile().delete();
+        }
+    }
+
+    /**
+     * Start the next attempt at a download after a delay, without holding up the thread that saw the last one fail.
+     */
+    private CompletableFuture<DownloadedFile> retryDownload(Duration delay, URI uri, Path location,
+                                                            String defaultFilename, boolean useServerFilename,
+                                                            boolean compress, int attempt) {
+        Executor delayedExecutor = CompletableFuture.delayedExecutor(delay.toMillis(), TimeUnit.MILLISECONDS);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return downloadResumably(uri, location, defaultFilename, useServerFilename, compress, attempt + 1);
+            } catch (IOException e) {
+                return CompletableFuture.<DownloadedFile>failedFuture(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return CompletableFuture.<DownloadedFile>failedFuture(e);
+            }
+        }, delayedExecutor).thenCompose(Function.identity());
+    }
+
+    /**
+     * Writes a response body to a file through a {@link GZIPOutputStream}.
+     */
+    private static final class GzipFileSubscriber implements Flow.Subscriber<List<ByteBuffer>> {
+        private final Path file;
+        private final FileDigest digest;
+        private Flow.Subscription subscription;
+        private OutputStream out;
+        private IOException error;
+
+        private GzipFileSubscriber(Path file, FileDigest digest) {
+            this.file = file;
+            this.digest = digest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            try {
+                out = new GZIPOutputStream(digest.wrap(Files.newOutputStream(file)), 1 << 16);
+                subscription.request(1);
+            } catch (IOException e) {
+                error = e;
+                subscription.cancel();
+            }
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            try {
+                for (ByteBuffer buffer : buffers) {
+                    byte[] bytes = new byte[buffer.remaining()];
+                    buffer.get(bytes);
+                    out.write(bytes);
+                }
+                subscription.request(1);
+            } catch (IOException e) {
+                error = e;
+                subscription.cancel();
+                closeQuietly();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            closeQuietly();
+        }
+
+        @Override
+        public void onComplete() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // The download has already failed
+            }
+        }
+
+        private Path getResult() {
+            if (error != null) {
+                throw new UncheckedIOException(error);
+            }
+            return file;
+        }
+    }
+
+    private static boolean isContinuation(HttpResponse.ResponseInfo responseInfo, long resumeFrom) {
+        return resumeFrom > 0 && responseInfo.headers().firstValue("Content-Range")
+                .filter(range -> range.startsWith("bytes " + resumeFrom + "-"))
+                .isPresent();
     }
 
+    /**
+     * Refresh the local drop, then overlay the current cards of any sets named by code.
+     */
     public static void main(String[] args) throws IOException, InterruptedException {
-        new ScryfallFetcher.Builder(Environment.getScryfallResourcePath()).build().refresh();
+        ScryfallFetcher fetcher = new ScryfallFetcher.Builder(Environment.getScryfallResourcePath())
+                .logToStdout().build();
+        Path current = fetcher.refresh();
+        if (args.length > 0) {
+            fetcher.fetchSetOverlay(current, Arrays.asList(args));
+        }
     }
 }
@@ -0,0 +1,281 @@
+/*
+ * Lambdagoyf: A Software Suite for MTG Hobbyists
+ * https://github.com/RyanSkonnord/lambdagoyf
+ *
+ * Copyright 2024 Ryan Skonnord
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ryanskonnord.lambdagoyf.scryfall;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.primitives.ImmutableLongArray;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The decoded values of one card object from Scryfall's bulk data, indexed by {@link ScryfallCardField}, along with
+ * any keys that did not match a known field.
+ * <p>
+ * Values can be decoded either from Gson's untyped tree form or directly from a token stream. Either way, they have
+ * the same types: integers are {@link Long}s, UUIDs are {@link UUID}s, lists and maps are immutable, and so on.
+ */
+final class ScryfallFieldValues {
+
+    private static final TypeAdapter<Object> UNTYPED_ADAPTER = new Gson().getAdapter(Object.class);
+
+    private final Object[] values = new Object[ScryfallCardField.values().length];
+    private final List<String> extraKeys = new ArrayList<>(0);
+    private final Set<ScryfallCardField> skippedFields;
+
+    private ScryfallFieldValues(Set<ScryfallCardField> skippedFields) {
+        this.skippedFields = skippedFields;
+    }
+
+    static ScryfallFieldValues create() {
+        return new ScryfallFieldValues(ImmutableSet.of());
+    }
+
+    public static ScryfallFieldValues fromMap(Map<String, ?> data) {
+        return fromMap(data, ImmutableSet.of());
+    }
+
+    /**
+     * @param skippedFields fields whose values are discarded without being converted
+     */
+    public static ScryfallFieldValues fromMap(Map<String, ?> data, Set<ScryfallCardField> skippedFields) {
+        ScryfallFieldValues fieldValues = new ScryfallFieldValues(skippedFields);
+        for (Map.Entry<String, ?> entry : data.entrySet()) {
+            fieldValues.putUntyped(entry.getKey(), entry.getValue());
+        }
+        fieldValues.mergeHiwtylFaces();
+        return fieldValues;
+    }
+
+    public static ScryfallFieldValues read(JsonReader in) throws IOException {
+        return read(in, ImmutableSet.of(), ScryfallEntryFilter.ALL).orElseThrow(AssertionError::new);
+    }
+
+    /**
+     * @param skippedFields fields whose values are skipped in the token stream without being decoded
+     * @param filter        a filter that may reject the object as soon as it reads one of the filtered fields
+     * @return the values, or empty if the filter rejected the object, in which case the rest of it is skipped
+     */
+    public static Optional<ScryfallFieldValues> read(JsonReader in, Set<ScryfallCardField> skippedFields,
+                                                     ScryfallEntryFilter filter) throws IOException {
+        ScryfallFieldValues fieldValues = new ScryfallFieldValues(skippedFields);
+        in.beginObject();
+        while (in.hasNext()) {
+            String key = in.nextName();
+            Optional<ScryfallCardField> field = ScryfallCardField.fromKey(key);
+            if (field.isEmpty()) {
+                fieldValues.extraKeys.add(key);
+                in.skipValue();
+            } else if (skippedFields.contains(field.get())) {
+                in.skipValue();
+            } else if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+            } else {
+                Object value = readValue(field.get().getType(), in);
+                if (!filter.accepts(field.get(), value)) {
+                    while (in.hasNext()) {
+                        in.nextName();
+                        in.skipValue();
+                    }
+                    in.endObject();
+                    return Optional.empty();
+                }
+                fieldValues.values[field.get().ordinal()] = value;
+            }
+        }
+        in.endObject();
+        fieldValues.mergeHiwtylFaces();
+        return Optional.of(fieldValues);
+    }
+
+    private void putUntyped(String key, Object value) {
+        Optional<ScryfallCardField> field = ScryfallCardField.fromKey(key);
+        if (field.isEmpty()) {
+            extraKeys.add(key);
+        } else if (value != null && !skippedFields.contains(field.get())) {
+            values[field.get().ordinal()] = convertUntyped(field.get().getType(), value);
+        }
+    }
+
+    /**
+     * Flatten a double-faced card whose faces share an oracle ID (such as "Heads I Win, Tails You Lose") into a
+     * single-faced entry, letting the faces' values take precedence over the top-level ones.
+     */
+    private void mergeHiwtylFaces() {
+        List<?> cardFaces = (List<?>) values[ScryfallCardField.CARD_FACES.ordinal()];
+        if (cardFaces == null || cardFaces.size() != 2) return;
+        Object firstOracleId = ((Map<?, ?>) cardFaces.get(0)).get("oracle_id");
+        Object secondOracleId = ((Map<?, ?>) cardFaces.get(1)).get("oracle_id");
+        if (firstOracleId == null || !firstOracleId.equals(secondOracleId)) return;
+
+        Map<String, Object> mergedValues = new LinkedHashMap<>();
+        for (Object face : cardFaces) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) face).entrySet()) {
+                if (entry.getValue() != null) {
+                    mergedValues.putIfAbsent((String) entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        for (Map.Entry<String, Object> entry : mergedValues.entrySet()) {
+            putUntyped(entry.getKey(), entry.getValue());
+        }
+        values[ScryfallCardField.CARD_FACES.ordinal()] = null;
+    }
+
+    private static Object convertUntyped(ScryfallCardField.ValueType type, Object value) {
+        return switch (type) {
+            case STRING -> (String) value;
+            case BOOLEAN -> (Boolean) value;
+            case INTEGER -> ScryfallParser.checkInteger((Double) value);
+            case DECIMAL -> (Double) value;
+            case UUID -> UUID.fromString((String) value);
+            case DATE -> LocalDate.parse((String) value);
+            case URI -> URI.create((String) value);
+            case STRINGS -> ScryfallParser.parseStrings((List<?>) value);
+            case UUIDS -> ScryfallParser.parseStrings((List<?>) value).stream()
+                    .map(UUID::fromString).collect(ImmutableList.toImmutableList());
+            case INTEGERS -> ScryfallParser.parseNumbers((List<?>) value);
+            case STRING_MAP -> ScryfallParser.parseStringMap((Map<?, ?>) value);
+            case STRING_MAPS -> ScryfallParser.parseObjectList(ScryfallParser::parseStringMap).apply((List<?>) value);
+            case OBJECTS -> ImmutableList.copyOf((Collection<?>) value);
+        };
+    }
+
+    private static Object readValue(ScryfallCardField.ValueType type, JsonReader in) throws IOException {
+        switch (type) {
+            case STRING:
+                return in.nextString();
+            case BOOLEAN:
+                return in.nextBoolean();
+            case INTEGER:
+                return readInteger(in);
+            case DECIMAL:
+                return in.nextDouble();
+            case UUID:
+                return UUID.fromString(in.nextString());
+            case DATE:
+                return LocalDate.parse(in.nextString());
+            case URI:
+                return URI.create(in.nextString());
+            case STRINGS: {
+                ImmutableList.Builder<String> builder = ImmutableList.builder();
+                in.beginArray();
+                while (in.hasNext()) {
+                    builder.add(in.nextString());
+                }
+                in.endArray();
+                return builder.build();
+            }
+            case UUIDS: {
+                ImmutableList.Builder<UUID> builder = ImmutableList.builder();
+                in.beginArray();
+                while (in.hasNext()) {
+                    builder.add(UUID.fromString(in.nextString()));
+                }
+                in.endArray();
+                return builder.build();
+            }
+            case INTEGERS: {
+                ImmutableLongArray.Builder builder = ImmutableLongArray.builder();
+                in.beginArray();
+                while (in.hasNext()) {
+                    builder.add(readInteger(in));
+                }
+                in.endArray();
+                return builder.build();
+            }
+            case STRING_MAP: {
+                ImmutableMap.Builder<String, String> builder = ImmutableMap.builder();
+                in.beginObject();
+                while (in.hasNext()) {
+                    String key = in.nextName();
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                    } else {
+                        builder.put(key, in.nextString());
+                    }
+                }
+                in.endObject();
+                return builder.build();
+            }
+            case STRING_MAPS:
+            case OBJECTS:
+                return convertUntyped(type, UNTYPED_ADAPTER.read(in));
+            default:
+                throw new AssertionError(type);
+        }
+    }
+
+    private static long readInteger(JsonReader in) throws IOException {
+        try {
+            return in.nextLong();
+        } catch (NumberFormatException e) {
+            throw new ScryfallDataException();
+        }
+    }
+
+
+    void put(ScryfallCardField field, Object value) {
+        values[field.ordinal()] = value;
+    }
+
+    Object getRaw(ScryfallCardField field) {
+        return values[field.ordinal()];
+    }
+
+    public <T> Optional<T> get(ScryfallCardField field) {
+        return Optional.ofNullable((T) values[field.ordinal()]);
+    }
+
+    public <T> T getRequired(ScryfallCardField field) {
+        return (T) Objects.requireNonNull(values[field.ordinal()], field.getKey());
+    }
+
+    public OptionalLong getInteger(ScryfallCardField field) {
+        Long value = (Long) values[field.ordinal()];
+        return value == null ? OptionalLong.empty() : OptionalLong.of(value);
+    }
+
+    public <T> ImmutableList<T> getList(ScryfallCardField field) {
+        ImmutableList<T> value = (ImmutableList<T>) values[field.ordinal()];
+        return value == null ? ImmutableList.of() : value;
+    }
+
+    public List<String> getExtraKeys() {
+        return extraKeys;
+    }
+}
@@ -19,35 +19,227 @@
 
 package io.github.ryanskonnord.lambdagoyf.scryfall;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
 import com.google.common.primitives.ImmutableLongArray;
 import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
 import io.github.ryanskonnord.lambdagoyf.Environment;
+import io.github.ryanskonnord.lambdagoyf.card.Card;
 import io.github.ryanskonnord.lambdagoyf.card.CardFactory;
 import io.github.ryanskonnord.lambdagoyf.card.ExpansionSpoiler;
+import io.github.ryanskonnord.lambdagoyf.card.IngestionReport;
+import io.github.ryanskonnord.lambdagoyf.card.MappedSpoiler;
 import io.github.ryanskonnord.lambdagoyf.card.Spoiler;
+import io.github.ryanskonnord.lambdagoyf.card.SpoilerRevision;
+import io.github.ryanskonnord.lambdagoyf.card.SpoilerSnapshot;
+import io.github.ryanskonnord.lambdagoyf.diagnostics.BulkParseEvent;
 import io.github.ryanskonnord.util.MapCollectors;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.OptionalLong;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 public final class ScryfallParser {
 
     public static final String BULK_DATA_TYPE = "default_cards";
+    public static final String MAPPED_SPOILER_FILENAME = "spoiler-mapped.bin";
+
+    public static enum Decoding {
+        /**
+         * Read the entire bulk file into an untyped JSON tree, then convert it to entries in parallel.
+         */
+        TREE,
+
+        /**
+         * Read one element of the bulk file's top-level array at a time, converting each to an entry and handing it
+         * directly to the card factory. Nothing is retained of the raw JSON beyond the element being read.
+         */
+        STREAMING,
+
+        /**
+         * Like {@link #STREAMING}, but decode each element's fields directly from the token stream instead of reading
+         * it into an untyped map first.
+         */
+        TYPED,
+
+        /**
+         * Scan the bulk file for the boundaries between elements of its top-level array, then decode ranges of
+         * elements as in {@link #TYPED} on a fork-join pool. Entries reach the card factory in file order, so the
+         * result is the same as the sequential modes. A gzipped bulk file is decoded as in {@link #TYPED}.
+         */
+        PARALLEL;
+    }
+
+    public static enum UriRetention {
+        /**
+         * Decode and keep every URI in the bulk data.
+         */
+        FULL(ImmutableSet.of()),
+
+        /**
+         * Skip the URI fields while decoding. Entries rebuild the ones that follow from their IDs and set code on
+         * demand, and have no image or related URIs.
+         */
+        DERIVED(Sets.immutableEnumSet(
+                ScryfallCardField.IMAGE_URIS,
+                ScryfallCardField.PRINTS_SEARCH_URI,
+                ScryfallCardField.RELATED_URIS,
+                ScryfallCardField.RULINGS_URI,
+                ScryfallCardField.SCRYFALL_SET_URI,
+                ScryfallCardField.SCRYFALL_URI,
+                ScryfallCardField.SET_SEARCH_URI,
+                ScryfallCardField.SET_URI,
+                ScryfallCardField.URI));
+
+        private final ImmutableSet<ScryfallCardField> skippedFields;
+
+        UriRetention(ImmutableSet<ScryfallCardField> skippedFields) {
+            this.skippedFields = skippedFields;
+        }
+    }
+
+    private static final long PARALLEL_RANGE_SIZE = 1L << 22;
+    private static final HashFunction ENTRY_HASH_FUNCTION = Hashing.farmHashFingerprint64();
+
+    private final String bulkDataType;
+    private final ScryfallEntryFilter filter;
+    private final Decoding decoding;
+    private final UriRetention uriRetention;
+    private final boolean useSnapshot;
+    private final ForkJoinPool pool;
+
+    private ScryfallParser(Builder builder) {
+        bulkDataType = Optional.ofNullable(builder.bulkDataType).orElse(BULK_DATA_TYPE);
+        filter = new ScryfallEntryFilter(Optional.ofNullable(builder.languages), Optional.ofNullable(builder.games),
+                Optional.ofNullable(builder.includeDigital).orElse(true));
+        decoding = Optional.ofNullable(builder.decoding).orElse(Decoding.TYPED);
+        uriRetention = Optional.ofNullable(builder.uriRetention).orElse(UriRetention.FULL);
+        useSnapshot = Optional.ofNullable(builder.useSnapshot).orElse(false);
+        pool = Optional.ofNullable(builder.pool).orElseGet(ForkJoinPool::commonPool);
+    }
+
+    public static final class Builder {
+        private String bulkDataType;
+        private Collection<String> languages;
+        private Collection<String> games;
+        private Boolean includeDigital;
+        private Decoding decoding;
+        private UriRetention uriRetention;
+        private Boolean useSnapshot;
+        private ForkJoinPool pool;
+
+        /**
+         * Set which of the fetched bulk data files to parse, such as {@code "all_cards"} for every language. Defaults
+         * to {@link #BULK_DATA_TYPE}.
+         */
+        public Builder withBulkDataType(String bulkDataType) {
+            this.bulkDataType = bulkDataType;
+            return this;
+        }
+
+        /**
+         * Keep only entries in the given languages, by Scryfall language code (such as {@code "en"} or {@code "de"}).
+         * By default, entries in all languages are kept.
+         */
+        public Builder withLanguages(Collection<String> languages) {
+            this.languages = languages;
+            return this;
+        }
+
+        /**
+         * Keep only entries available in at least one of the given games ({@code "paper"}, {@code "mtgo"} or
+         * {@code "arena"}). By default, entries are kept regardless of games.
+         */
+        public Builder withGames(Collection<String> games) {
+            this.games = games;
+            return this;
+        }
+
+        /**
+         * Set whether to keep printings that exist only in digital games. Defaults to true.
+         */
+        public Builder withDigitalPrintings(boolean includeDigital) {
+            this.includeDigital = includeDigital;
+            return this;
+        }
+
+        public Builder withDecoding(Decoding decoding) {
+            this.decoding = decoding;
+            return this;
+        }
+
+        public Builder withUriRetention(UriRetention uriRetention) {
+            this.uriRetention = uriRetention;
+            return this;
+        }
+
+        /**
+         * Load the parsed data from a binary snapshot in the data directory if it is up to date, and otherwise write
+         * one while parsing the JSON. {@link #parseSpoiler} and {@link #parseReportedSpoiler} also snapshot the
+         * built cards.
+         */
+        public Builder withSnapshot(boolean useSnapshot) {
+            this.useSnapshot = useSnapshot;
+            return this;
+        }
+
+        /**
+         * Set the pool that decodes ranges of the bulk file in {@link Decoding#PARALLEL} mode. Defaults to the common
+         * pool.
+         */
+        public Builder withForkJoinPool(ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        public ScryfallParser build() {
+            return new ScryfallParser(this);
+        }
+    }
 
     public static Spoiler createSpoiler() throws IOException, InterruptedException {
         Path location = Environment.getScryfallResourcePath();
@@ -57,7 +249,18 @@ public final class ScryfallParser {
         }
 
         Path data = builder.build().refresh();
-        return new ScryfallParser().parseScryfallData(data).createSpoiler();
+        return new ScryfallParser.Builder().withSnapshot(true).build().parseSpoiler(data);
+    }
+
+    public static MappedSpoiler createMappedSpoiler() throws IOException, InterruptedException {
+        Path location = Environment.getScryfallResourcePath();
+        ScryfallFetcher.Builder builder = new ScryfallFetcher.Builder(location).logToStdout();
+        if (BULK_DATA_TYPE != null) {
+            builder = builder.withTypeFilter(BULK_DATA_TYPE::equals);
+        }
+
+        Path data = builder.build().refresh();
+        return new ScryfallParser.Builder().withSnapshot(true).build().parseMappedSpoiler(data);
     }
 
     private <T> T readJsonFile(Path directory, String filename, Class<T> type) throws IOException {
@@ -67,32 +270,461 @@ public final class ScryfallParser {
     }
 
     public CardFactory parseScryfallData(Path directory) throws IOException {
-        Map<?, ?> manifest = readJsonFile(directory, "manifest.json", Map.class);
-        Map<?, ?> files = (Map<?, ?>) manifest.get("files");
-        String filename = (String) files.get(BULK_DATA_TYPE);
+        return parseCardFactory(directory, readExpansions(directory), values -> {
+        }, IngestionReport.Recorder.disabled());
+    }
+
+    /**
+     * Parse the data in a directory into a spoiler. With a snapshot, the cards are restored from a
+     * {@link SpoilerSnapshot} of the same data if there is one, and one is written after they are built otherwise.
+     */
+    public Spoiler parseSpoiler(Path directory) throws IOException {
+        return parseSpoiler(directory, readExpansions(directory), IngestionReport.Recorder.disabled());
+    }
+
+    private Spoiler parseSpoiler(Path directory, ExpansionSpoiler expansions, IngestionReport.Recorder recorder)
+            throws IOException {
+        Optional<String> versionKey = useSnapshot ? readVersionKey(directory) : Optional.empty();
+        Path snapshotFile = directory.resolve(SpoilerSnapshot.FILENAME);
+        if (versionKey.isPresent()) {
+            Optional<Spoiler> restored = SpoilerSnapshot.read(snapshotFile, versionKey.get(), expansions, recorder);
+            if (restored.isPresent()) {
+                return restored.get();
+            }
+        }
+        Spoiler spoiler = parseCardFactory(directory, expansions, values -> {
+        }, recorder).createSpoiler(recorder);
+        versionKey.ifPresent((String key) -> recorder.measure("model snapshot write", () -> {
+            SpoilerSnapshot.write(snapshotFile, key, spoiler);
+            return spoiler;
+        }, (Spoiler s) -> s.getCards().size()));
+        return spoiler;
+    }
+
+    /**
+     * Open the data in a directory as a {@link MappedSpoiler}, first writing its mapped file if it is missing or out
+     * of date.
+     */
+    public MappedSpoiler parseMappedSpoiler(Path directory) throws IOException {
+        ExpansionSpoiler expansions = readExpansions(directory);
+        Optional<String> versionKey = readVersionKey(directory);
+        // An unversioned drop is always rebuilt, under a key that a later run won't trust
+        String sourceKey = versionKey.orElse("unversioned");
+        Path mappedFile = directory.resolve(MAPPED_SPOILER_FILENAME);
+        CardFactory mappedFactory = new CardFactory(expansions, ImmutableList.of());
+        // Cards are decoded on demand for as long as the spoiler is open, so each decoding gets a pool of its own
+        // rather than one that would grow with every card ever looked up
+        Function<ByteBuffer, Collection<ScryfallCardEntry>> entryDecoder = (ByteBuffer data) -> {
+            ScryfallValuePool valuePool = new ScryfallValuePool();
+            return ScryfallValueCodec.decodeAll(data).stream()
+                    .map((ScryfallFieldValues values) -> new ScryfallCardEntry(values, null, valuePool))
+                    .collect(ImmutableList.toImmutableList());
+        };
+
+        Optional<MappedSpoiler> existing = versionKey.isPresent()
+                ? MappedSpoiler.open(mappedFile, sourceKey, mappedFactory, entryDecoder)
+                : Optional.empty();
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+
+        // Encoded entries by oracle ID, then by Scryfall ID, so that an overlay entry replaces the bulk entry
+        Map<UUID, Map<UUID, byte[]>> entryData = new HashMap<>();
+        Map<UUID, UUID> oracleIds = new HashMap<>();
+        CardFactory factory = parseCardFactory(directory, expansions, (ScryfallFieldValues values) -> {
+            UUID id = values.getRequired(ScryfallCardField.ID);
+            UUID oracleId = values.getRequired(ScryfallCardField.ORACLE_ID);
+            UUID previousOracleId = oracleIds.put(id, oracleId);
+            if (previousOracleId != null) {
+                entryData.get(previousOracleId).remove(id);
+            }
+            entryData.computeIfAbsent(oracleId, k -> new LinkedHashMap<>()).put(id, ScryfallValueCodec.encode(values));
+        }, IngestionReport.Recorder.disabled());
+        MappedSpoiler.write(mappedFile, sourceKey, factory.createSpoiler(), (Card card) -> {
+            ByteArrayOutputStream cardData = new ByteArrayOutputStream();
+            entryData.get(card.getScryfallId()).values().forEach(cardData::writeBytes);
+            return cardData.toByteArray();
+        });
+        return MappedSpoiler.open(mappedFile, sourceKey, mappedFactory, entryDecoder)
+                .orElseThrow(() -> new IOException("Could not reopen " + mappedFile));
+    }
+
+    /**
+     * Parse the data in a directory into a spoiler, reconstructing only the cards whose entries differ from those in a
+     * previous revision. The result is the same as a full rebuild.
+     */
+    public SpoilerRevision parseSpoilerRevision(Path directory, Optional<SpoilerRevision> previous) throws IOException {
+        // Keep the old instance of each unchanged expansion so that the previous revision's cards can be reused
+        ExpansionSpoiler expansions = new ExpansionSpoiler(readSetData(directory),
+                previous.map(SpoilerRevision::getExpansions));
+        Map<UUID, HashCode> entryHashes = new ConcurrentHashMap<>();
+        CardFactory factory = parseCardFactory(directory, expansions, (ScryfallFieldValues values) ->
+                entryHashes.put(values.getRequired(ScryfallCardField.ID),
+                        ENTRY_HASH_FUNCTION.hashBytes(ScryfallValueCodec.encodeModelFields(values))),
+                IngestionReport.Recorder.disabled());
+        return factory.createSpoilerRevision(entryHashes, previous);
+    }
+
+    /**
+     * A spoiler along with a report of what it cost to ingest.
+     */
+    public static final class ReportedSpoiler {
+        private final Spoiler spoiler;
+        private final IngestionReport report;
+
+        private ReportedSpoiler(Spoiler spoiler, IngestionReport report) {
+            this.spoiler = Objects.requireNonNull(spoiler);
+            this.report = Objects.requireNonNull(report);
+        }
+
+        public Spoiler getSpoiler() {
+            return spoiler;
+        }
+
+        public IngestionReport getReport() {
+            return report;
+        }
+    }
+
+    /**
+     * Parse the data in a directory into a spoiler, measuring each stage. The report is also written to
+     * {@link IngestionReport#FILENAME} next to the directory's manifest, so that it can be compared across drops.
+     */
+    public ReportedSpoiler parseReportedSpoiler(Path directory) throws IOException {
+        IngestionReport.Recorder recorder = new IngestionReport.Recorder()
+                .putAttribute("source", readSnapshotHeader(directory).getSourceKey().orElse("unversioned"))
+                .putAttribute("decoding", decoding.name())
+                .putAttribute("snapshot", Boolean.toString(useSnapshot))
+                .putAttribute("availableProcessors", Integer.toString(Runtime.getRuntime().availableProcessors()));
+        ExpansionSpoiler expansions = recorder.measure("sets",
+                () -> readExpansions(directory), (ExpansionSpoiler e) -> e.getAll().size());
+        Spoiler spoiler = parseSpoiler(directory, expansions, recorder);
 
+        IngestionReport report = recorder.build();
+        try {
+            report.writeTo(directory);
+        } catch (IOException e) {
+            System.err.println("Could not write ingestion report to " + directory + ": " + e);
+        }
+        return new ReportedSpoiler(spoiler, report);
+    }
+
+    private ExpansionSpoiler readExpansions(Path directory) throws IOException {
+        return new ExpansionSpoiler(readSetData(directory));
+    }
+
+    private Collection<ScryfallSet> readSetData(Path directory) throws IOException {
         Map<?, ?> setJson = readJsonFile(directory, "sets.json", Map.class);
-        Collection<ScryfallSet> setData = ((List<?>) setJson.get("data")).stream()
+        return ((List<?>) setJson.get("data")).stream()
                 .map(e -> new ScryfallSet((Map<?, ?>) e))
                 .collect(ImmutableList.toImmutableList());
-        ExpansionSpoiler expansions = new ExpansionSpoiler(setData);
+    }
 
-        List<Map<?, ?>> cards = readJsonFile(directory, filename, List.class);
+    /**
+     * @return a key that identifies the bulk data and the overlay in a directory, if its manifest is versioned
+     */
+    private Optional<String> readVersionKey(Path directory) throws IOException {
+        Optional<Map<?, ?>> overlay = readOverlayManifest(directory);
+        return readSnapshotHeader(directory).getSourceKey()
+                .map(key -> key + overlay.map(o -> "/overlay/" + o.get("fetchedTime")).orElse(""));
+    }
+
+    private ScryfallSnapshot.Header readSnapshotHeader(Path directory) throws IOException {
+        Map<?, ?> manifest = readJsonFile(directory, "manifest.json", Map.class);
+        Map<?, ?> files = (Map<?, ?>) manifest.get("files");
+        String filename = (String) files.get(bulkDataType);
+        if (filename == null) {
+            throw new IOException("No " + bulkDataType + " file in " + directory);
+        }
+        String profile = String.join(";", uriRetention.name(), filter.getKey());
+        return new ScryfallSnapshot.Header(Optional.ofNullable((String) manifest.get("latestUpdated")), filename,
+                profile);
+    }
 
+    /**
+     * Parse the bulk file in a directory, then merge the directory's overlay over it if it has one.
+     */
+    private CardFactory parseCardFactory(Path directory, ExpansionSpoiler expansions,
+                                         Consumer<ScryfallFieldValues> valuesListener,
+                                         IngestionReport.Recorder recorder) throws IOException {
+        CardFactory bulkFactory = parseBulkFactory(directory, expansions, valuesListener, recorder);
+        Optional<Map<?, ?>> overlay = readOverlayManifest(directory);
+        if (overlay.isEmpty()) {
+            return bulkFactory;
+        }
+        Path overlayFile = directory.resolve((String) overlay.get().get("file"));
+        List<ScryfallCardEntry> overlayEntries = recorder.measure("overlay",
+                () -> parseOverlay(overlayFile, valuesListener), List::size);
+        return bulkFactory.withOverlay(overlayEntries);
+    }
+
+    /**
+     * @return the manifest's description of the overlay fetched by {@link ScryfallFetcher#fetchSetOverlay}, if any
+     */
+    private Optional<Map<?, ?>> readOverlayManifest(Path directory) throws IOException {
+        Map<?, ?> manifest = readJsonFile(directory, "manifest.json", Map.class);
+        return Optional.ofNullable((Map<?, ?>) manifest.get("overlay"));
+    }
+
+    /**
+     * Parse an overlay, which is small enough that it is never snapshotted or decoded in parallel.
+     */
+    private List<ScryfallCardEntry> parseOverlay(Path file, Consumer<ScryfallFieldValues> valuesListener)
+            throws IOException {
+        Set<String> unaccountedKeys = new TreeSet<>();
+        ScryfallCardEntryDecoder entryDecoder = new ScryfallCardEntryDecoder(unaccountedKeys::add,
+                uriRetention.skippedFields, filter, new ScryfallValuePool(), valuesListener);
+        List<ScryfallCardEntry> entries = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(file))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                ScryfallCardEntry entry = entryDecoder.read(reader);
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            }
+            reader.endArray();
+        }
+        if (!unaccountedKeys.isEmpty()) {
+            System.err.println("Unaccounted keys in overlay: " + unaccountedKeys);
+        }
+        return entries;
+    }
+
+    private CardFactory parseBulkFactory(Path directory, ExpansionSpoiler expansions,
+                                         Consumer<ScryfallFieldValues> valuesListener,
+                                         IngestionReport.Recorder recorder) throws IOException {
+        ScryfallSnapshot.Header header = readSnapshotHeader(directory);
+        Path dataFile = directory.resolve(header.getDataFilename());
+        if (!useSnapshot) {
+            return parseJson(dataFile, expansions, valuesListener, recorder);
+        }
+
+        Path snapshotFile = directory.resolve(ScryfallSnapshot.FILENAME);
+        LongAdder snapshotEntryCount = new LongAdder();
+        BulkParseEvent event = new BulkParseEvent();
+        event.begin();
+        Optional<CardFactory> fromSnapshot = recorder.measure("snapshot",
+                () -> ScryfallSnapshot.read(snapshotFile, header, expansions,
+                        valuesListener.andThen(values -> snapshotEntryCount.increment())),
+                (Optional<CardFactory> f) -> snapshotEntryCount.sum());
+        if (fromSnapshot.isPresent()) {
+            commitBulkParseEvent(event, snapshotFile, true, snapshotEntryCount.sum());
+            return fromSnapshot.get();
+        }
+        try (ScryfallSnapshot.Writer snapshotWriter = new ScryfallSnapshot.Writer(snapshotFile, header)) {
+            CardFactory factory = parseJson(dataFile, expansions, valuesListener.andThen(snapshotWriter::write), recorder);
+            snapshotWriter.commit();
+            return factory;
+        }
+    }
+
+    private static boolean isCompressed(Path file) {
+        return file.getFileName().toString().endsWith(".gz");
+    }
+
+    /**
+     * Open a bulk data file, which may have been stored gzipped.
+     */
+    private static Reader openDataFile(Path file) throws IOException {
+        if (isCompressed(file)) {
+            InputStream input = new GZIPInputStream(Files.newInputStream(file), 1 << 16);
+            return new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), 1 << 16);
+        } else {
+            return Files.newBufferedReader(file);
+        }
+    }
+
+    /**
+     * @param recorder records a separate stage for each phase of {@link Decoding#TREE}, and a single stage for the
+     *                 other decodings, which interleave reading, decoding and building entries
+     */
+    private CardFactory parseJson(Path file, ExpansionSpoiler expansions, Consumer<ScryfallFieldValues> valuesListener,
+                                  IngestionReport.Recorder recorder) throws IOException {
         Set<String> unaccountedKeys = Collections.synchronizedSet(new TreeSet<>());
-        List<ScryfallCardEntry> cardEntries = cards.parallelStream()
-                .map((Map<?, ?> data) -> new ScryfallCardEntry((Map<String, ?>) data, unaccountedKeys::add))
-                .collect(Collectors.toCollection(ArrayList::new));
+        ScryfallValuePool valuePool = new ScryfallValuePool();
+        LongAdder entryCount = new LongAdder();
+        Consumer<ScryfallFieldValues> countingListener = valuesListener.andThen(values -> entryCount.increment());
+        BulkParseEvent event = new BulkParseEvent();
+        event.begin();
+        CardFactory factory = switch (decoding) {
+            case TREE -> parseTree(file, expansions, unaccountedKeys::add, valuePool, countingListener, recorder);
+            case STREAMING -> recorder.measure("decode",
+                    () -> parseStreaming(file, expansions, unaccountedKeys::add, valuePool, countingListener),
+                    f -> entryCount.sum());
+            case TYPED -> recorder.measure("decode",
+                    () -> parseTyped(file, expansions, unaccountedKeys::add, valuePool, countingListener),
+                    f -> entryCount.sum());
+            case PARALLEL -> recorder.measure("decode",
+                    () -> isCompressed(file)
+                            // A compressed file can't be split without decompressing it first
+                            ? parseTyped(file, expansions, unaccountedKeys::add, valuePool, countingListener)
+                            : parseParallel(file, expansions, unaccountedKeys::add, valuePool, countingListener),
+                    f -> entryCount.sum());
+        };
+        commitBulkParseEvent(event, file, false, entryCount.sum());
         if (!unaccountedKeys.isEmpty()) {
             System.err.println("Unaccounted keys: " + unaccountedKeys);
         }
+        return factory;
+    }
+
+    private void commitBulkParseEvent(BulkParseEvent event, Path file, boolean fromSnapshot, long entries)
+            throws IOException {
+        event.end();
+        if (event.shouldCommit()) {
+            event.file = file.getFileName().toString();
+            event.decoding = decoding.name();
+            event.fromSnapshot = fromSnapshot;
+            event.fileBytes = Files.size(file);
+            event.entries = entries;
+            event.commit();
+        }
+    }
+
+    private CardFactory parseTree(Path file, ExpansionSpoiler expansions, Consumer<String> extraKeyConsumer,
+                                  ScryfallValuePool valuePool, Consumer<ScryfallFieldValues> valuesListener,
+                                  IngestionReport.Recorder recorder) throws IOException {
+        List<Map<?, ?>> cards = recorder.measure("read JSON tree", () -> {
+            try (Reader reader = openDataFile(file)) {
+                return (List<Map<?, ?>>) new Gson().fromJson(reader, List.class);
+            }
+        }, List::size);
+
+        List<ScryfallFieldValues> cardValues = recorder.measure("convert values",
+                () -> cards.parallelStream()
+                        .map((Map<?, ?> data) -> ScryfallFieldValues.fromMap((Map<String, ?>) data, uriRetention.skippedFields))
+                        .filter(filter::accepts)
+                        .collect(Collectors.toList()),
+                List::size);
+        cardValues.forEach(valuesListener);
+        List<ScryfallCardEntry> cardEntries = recorder.measure("build entries",
+                () -> cardValues.parallelStream()
+                        .map((ScryfallFieldValues values) -> new ScryfallCardEntry(values, extraKeyConsumer, valuePool))
+                        .collect(Collectors.toCollection(ArrayList::new)),
+                List::size);
         Collections.shuffle(cardEntries);
 
         return new CardFactory(expansions, cardEntries);
     }
 
+    private CardFactory parseStreaming(Path file, ExpansionSpoiler expansions, Consumer<String> extraKeyConsumer,
+                                       ScryfallValuePool valuePool, Consumer<ScryfallFieldValues> valuesListener) throws IOException {
+        TypeAdapter<Object> elementAdapter = new Gson().getAdapter(Object.class);
+        CardFactory.Builder factoryBuilder = new CardFactory.Builder(expansions);
+        try (JsonReader reader = new JsonReader(openDataFile(file))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                ScryfallFieldValues values = ScryfallFieldValues.fromMap((Map<String, ?>) elementAdapter.read(reader),
+                        uriRetention.skippedFields);
+                if (!filter.accepts(values)) continue;
+                valuesListener.accept(values);
+                factoryBuilder.add(new ScryfallCardEntry(values, extraKeyConsumer, valuePool));
+            }
+            reader.endArray();
+        }
+        return factoryBuilder.build();
+    }
+
+    private CardFactory parseTyped(Path file, ExpansionSpoiler expansions, Consumer<String> extraKeyConsumer,
+                                   ScryfallValuePool valuePool, Consumer<ScryfallFieldValues> valuesListener) throws IOException {
+        ScryfallCardEntryDecoder entryDecoder = new ScryfallCardEntryDecoder(extraKeyConsumer,
+                uriRetention.skippedFields, filter, valuePool, valuesListener);
+        CardFactory.Builder factoryBuilder = new CardFactory.Builder(expansions);
+        try (JsonReader reader = new JsonReader(openDataFile(file))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                ScryfallCardEntry entry = entryDecoder.read(reader);
+                if (entry != null) {
+                    factoryBuilder.add(entry);
+                }
+            }
+            reader.endArray();
+        }
+        return factoryBuilder.build();
+    }
+
+
+    private static final class DecodedRange {
+        private final List<ScryfallFieldValues> values = new ArrayList<>();
+        private final List<ScryfallCardEntry> entries = new ArrayList<>();
+    }
+
+    private CardFactory parseParallel(Path file, ExpansionSpoiler expansions, Consumer<String> extraKeyConsumer,
+                                      ScryfallValuePool valuePool, Consumer<ScryfallFieldValues> valuesListener) throws IOException {
+        CardFactory.Builder factoryBuilder = new CardFactory.Builder(expansions);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ScryfallArraySplitter splitter = new ScryfallArraySplitter(channel, PARALLEL_RANGE_SIZE);
+
+            // Keep enough ranges in flight to occupy the pool, but not so many that decoded entries pile up
+            int maxInFlight = 2 * pool.getParallelism();
+            Deque<ForkJoinTask<DecodedRange>> inFlight = new ArrayDeque<>(maxInFlight);
+            boolean hasMoreRanges = true;
+            while (hasMoreRanges || !inFlight.isEmpty()) {
+                while (hasMoreRanges && inFlight.size() < maxInFlight) {
+                    Optional<ScryfallArraySplitter.Range> range = splitter.next();
+                    if (range.isPresent()) {
+                        inFlight.add(pool.submit(() -> decodeRange(channel, range.get(), uriRetention.skippedFields,
+                                filter, extraKeyConsumer, valuePool)));
+                    } else {
+                        hasMoreRanges = false;
+                    }
+                }
+                if (!inFlight.isEmpty()) {
+                    DecodedRange decoded = joinRange(inFlight.remove());
+                    decoded.values.forEach(valuesListener);
+                    decoded.entries.forEach(factoryBuilder::add);
+                }
+            }
+        }
+        return factoryBuilder.build();
+    }
+
+    private static DecodedRange joinRange(ForkJoinTask<DecodedRange> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static DecodedRange decodeRange(FileChannel channel, ScryfallArraySplitter.Range range,
+                                            Set<ScryfallCardField> skippedFields, ScryfallEntryFilter filter,
+                                            Consumer<String> extraKeyConsumer, ScryfallValuePool valuePool)
+            throws IOException {
+        // Wrap the range's elements in brackets so that they can be read as an array of their own
+        byte[] bytes = new byte[Math.toIntExact(range.getLength()) + 2];
+        bytes[0] = '[';
+        bytes[bytes.length - 1] = ']';
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, bytes.length - 2);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, range.getStart() + buffer.position() - 1) < 0) {
+                throw new EOFException();
+            }
+        }
+
+        DecodedRange decoded = new DecodedRange();
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                Optional<ScryfallFieldValues> values = ScryfallFieldValues.read(reader, skippedFields, filter);
+                if (values.isPresent()) {
+                    decoded.values.add(values.get());
+                    decoded.entries.add(new ScryfallCardEntry(values.get(), extraKeyConsumer, valuePool));
+                }
+            }
+            reader.endArray();
+        }
+        return decoded;
+    }
+
 
-    private static long checkInteger(Double number) {
+    static long checkInteger(Double number) {
         long integer = number.longValue();
         if (integer != number) {
             throw new ScryfallDataException();
@@ -0,0 +1,121 @@
+/*
+ * Lambdagoyf: A Software Suite for MTG Hobbyists
+ * https://github.com/RyanSkonnord/lambdagoyf
+ *
+ * Copyright 2024 Ryan Skonnord
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ryanskonnord.lambdagoyf.scryfall;
+
+import com.google.common.base.Preconditions;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces out requests to Scryfall, as a token bucket that every request takes a token from. Scryfall asks clients to
+ * make no more than about ten requests per second, and to back off when it answers with HTTP 429.
+ * <p>
+ * Requests to the API from the same process should all go through one instance, such as {@link #getShared()}, so
+ * that a pause requested by the server applies to all of them.
+ */
+public final class ScryfallRateLimiter {
+
+    private static final ScryfallRateLimiter SHARED = new ScryfallRateLimiter(Duration.ofMillis(100), 1);
+
+    /**
+     * The limiter for all requests in this process that don't have their own, at Scryfall's documented rate.
+     */
+    public static ScryfallRateLimiter getShared() {
+        return SHARED;
+    }
+
+    public static ScryfallRateLimiter create(double requestsPerSecond, int burst) {
+        Preconditions.checkArgument(requestsPerSecond > 0.0);
+        return new ScryfallRateLimiter(Duration.ofNanos((long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond)), burst);
+    }
+
+    /**
+     * Allow one request per interval, or any number if the interval is zero.
+     */
+    public static ScryfallRateLimiter withInterval(Duration interval) {
+        return new ScryfallRateLimiter(interval, 1);
+    }
+
+    private final long nanosPerToken;
+    private final int capacity;
+
+    // Guarded by this
+    private double tokens;
+    private long lastRefill;
+    private long pausedUntil;
+
+    private ScryfallRateLimiter(Duration interval, int capacity) {
+        Preconditions.checkArgument(!interval.isNegative());
+        Preconditions.checkArgument(capacity >= 1);
+        this.nanosPerToken = interval.toNanos();
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+        this.pausedUntil = lastRefill;
+    }
+
+    /**
+     * Wait until a request may be made, and count it against the limit.
+     */
+    public void acquire() throws InterruptedException {
+        while (true) {
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                refill(now);
+                if (now - pausedUntil >= 0 && tokens >= 1.0) {
+                    tokens -= 1.0;
+                    return;
+                }
+                long untilToken = tokens >= 1.0 ? 0L : (long) Math.ceil((1.0 - tokens) * nanosPerToken);
+                wait = Math.max(pausedUntil - now, untilToken);
+            }
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * Hold back all requests for a time, such as when the server answers with a {@code Retry-After} header. Requests
+     * made afterward start with an empty bucket, so they don't arrive in a burst.
+     */
+    public synchronized void pauseFor(Duration pause) {
+        long now = System.nanoTime();
+        long until = now + pause.toNanos();
+        if (until - pausedUntil > 0) {
+            pausedUntil = until;
+        }
+        refill(now);
+        tokens = Math.min(tokens, 0.0);
+    }
+
+    private void refill(long now) {
+        if (nanosPerToken == 0L) {
+            tokens = capacity;
+        } else {
+            // No tokens accumulate during a pause
+            long start = pausedUntil - lastRefill > 0 ? pausedUntil : lastRefill;
+            if (now - start > 0) {
+                tokens = Math.min(capacity, tokens + (double) (now - start) / nanosPerToken);
+            }
+        }
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Lambdagoyf: A Software Suite for MTG Hobbyists
+ * https://github.com/RyanSkonnord/lambdagoyf
+ *
+ * Copyright 2024 Ryan Skonnord
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ryanskonnord.lambdagoyf.scryfall;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import io.github.ryanskonnord.lambdagoyf.card.CardFactory;
+import io.github.ryanskonnord.lambdagoyf.card.ExpansionSpoiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * A compact binary copy of the decoded card values from one bulk data drop, stored next to its manifest so that later
+ * runs can skip JSON parsing.
+ * <p>
+ * A snapshot is only used if its header matches the drop's {@code latestUpdated} timestamp and data file, the
+ * parser's profile, and the schema hash of {@link ScryfallCardField}. Anything else is treated as stale and rewritten
+ * from the JSON. A drop whose manifest has no {@code latestUpdated} can't be told apart from a later one, so its
+ * snapshot is never used.
+ * <p>
+ * Only the decoding of the JSON is skipped, and cards are still built from the values. {@link ScryfallParser} first
+ * looks for a {@link io.github.ryanskonnord.lambdagoyf.card.SpoilerSnapshot} of the built cards, and falls back to this
+ * snapshot when that one is stale, as it is after an overlay changes.
+ */
+final class ScryfallSnapshot {
+    private ScryfallSnapshot() {
+        throw new RuntimeException();
+    }
+
+    public static final String FILENAME = "spoiler-snapshot.bin";
+
+    private static final int MAGIC = 0x4C475353;
+    private static final int FORMAT_VERSION = 2;
+    private static final long SCHEMA_HASH = computeSchemaHash();
+
+    private static long computeSchemaHash() {
+        Hasher hasher = Hashing.sha256().newHasher().putInt(FORMAT_VERSION);
+        for (ScryfallCardField field : ScryfallCardField.values()) {
+            hasher.putString(field.getKey(), StandardCharsets.UTF_8).putString(field.getType().name(), StandardCharsets.UTF_8);
+        }
+        return hasher.hash().asLong();
+    }
+
+    public static final class Header {
+        private final Optional<String> latestUpdated;
+        private final String dataFilename;
+        private final String profile;
+
+        /**
+         * @param latestUpdated the drop's version, if its manifest has one
+         * @param profile       a description of the parser options that affect which values are decoded
+         */
+        public Header(Optional<String> latestUpdated, String dataFilename, String profile) {
+            this.latestUpdated = Objects.requireNonNull(latestUpdated);
+            this.dataFilename = Objects.requireNonNull(dataFilename);
+            this.profile = Objects.requireNonNull(profile);
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(SCHEMA_HASH);
+            out.writeUTF(latestUpdated.orElse(""));
+            out.writeUTF(dataFilename);
+            out.writeUTF(profile);
+        }
+
+        public String getDataFilename() {
+            return dataFilename;
+        }
+
+        /**
+         * @return a string that changes whenever a snapshot written with this header would be stale, or empty if the
+         * drop has no version to tell whether it is
+         */
+        public Optional<String> getSourceKey() {
+            return latestUpdated.map(version -> String.join("/", Integer.toString(FORMAT_VERSION),
+                    Long.toHexString(SCHEMA_HASH), version, dataFilename, profile));
+        }
+
+        private boolean matches(DataInputStream in) throws IOException {
+            return latestUpdated.isPresent()
+                    && in.readInt() == MAGIC
+                    && in.readInt() == FORMAT_VERSION
+                    && in.readLong() == SCHEMA_HASH
+                    && in.readUTF().equals(latestUpdated.get())
+                    && in.readUTF().equals(dataFilename)
+                    && in.readUTF().equals(profile);
+        }
+    }
+
+    /**
+     * Load a card factory from a snapshot file.
+     *
+     * @return the factory, or empty if the snapshot is missing, stale or unreadable
+     */
+    public static Optional<CardFactory> read(Path file, Header header, ExpansionSpoiler expansions,
+                                             Consumer<? super ScryfallFieldValues> valuesListener) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (!header.matches(in)) {
+                return Optional.empty();
+            }
+            ScryfallValueCodec.Decoder decoder = new ScryfallValueCodec.Decoder(in);
+            CardFactory.Builder factoryBuilder = new CardFactory.Builder(expansions);
+            ScryfallValuePool valuePool = new ScryfallValuePool();
+            while (in.readBoolean()) {
+                ScryfallFieldValues values = decoder.readFieldValues();
+                valuesListener.accept(values);
+                factoryBuilder.add(new ScryfallCardEntry(values, null, valuePool));
+            }
+            return Optional.of(factoryBuilder.build());
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not read snapshot " + file + ": " + e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Writes a snapshot to a temporary file as values are decoded, and moves it into place on {@link #commit}.
+     * <p>
+     * The snapshot is only a cache, so a failure to write it is reported and otherwise ignored.
+     */
+    public static final class Writer implements Closeable {
+        private final Path destination;
+        private final Path temporaryFile;
+        private DataOutputStream out;
+        private ScryfallValueCodec.Encoder encoder;
+
+        public Writer(Path destination, Header header) {
+            this.destination = destination;
+            this.temporaryFile = destination.resolveSibling(destination.getFileName() + ".tmp");
+            try {
+                out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile), 1 << 16));
+                header.write(out);
+                encoder = new ScryfallValueCodec.Encoder(out);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        private void fail(IOException e) {
+            System.err.println("Could not write snapshot " + destination + ": " + e);
+            closeQuietly();
+            out = null;
+        }
+
+        public synchronized void write(ScryfallFieldValues values) {
+            if (out == null) return;
+            try {
+                out.writeBoolean(true);
+                encoder.writeFieldValues(values);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        public synchronized void commit() {
+            if (out == null) return;
+            try {
+                out.writeBoolean(false);
+                out.close();
+                out = null;
+                Files.move(temporaryFile, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                if (out != null) {
+                    out.close();
+                }
+                Files.deleteIfExists(temporaryFile);
+            } catch (IOException e) {
+                System.err.println("Could not clean up " + temporaryFile + ": " + e);
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            if (out != null) {
+                closeQuietly();
+                out = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,459 @@
+/*
+ * Lambdagoyf: A Software Suite for MTG Hobbyists
+ * https://github.com/RyanSkonnord/lambdagoyf
+ *
+ * Copyright 2024 Ryan Skonnord
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ryanskonnord.lambdagoyf.scryfall;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.Gson;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.ryanskonnord.lambdagoyf.Environment;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A local stand-in for the parts of the Scryfall API that {@link ScryfallFetcher} uses, serving a bulk data drop from
+ * a directory in the layout that the fetcher writes. Point a fetcher at it with
+ * {@link ScryfallFetcher.Builder#withApiBaseUri}.
+ * <p>
+ * It serves the bulk data listing at {@code bulk-data}, the set list at {@code sets/}, and each file named in the
+ * drop's manifest under {@code file/}. At {@code cards/search}, it pages through the printings of a set in the drop's
+ * {@value ScryfallParser#BULK_DATA_TYPE} file for an {@code e:} or {@code set:} query. It answers conditional and
+ * ranged requests, and can be made to respond slowly, to throttle requests and to cut file downloads short.
+ */
+public final class ScryfallStandInServer implements Closeable {
+
+    private static final String MANIFEST_JSON = "manifest.json";
+    private static final String SETS = "sets";
+    private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d+)-");
+    private static final Pattern SET_QUERY_PATTERN = Pattern.compile("(?:e|set):(\\w+)");
+    private static final int SEARCH_PAGE_SIZE = 175;
+
+    private final Path dataDirectory;
+    private final int port;
+    private final Duration latency;
+    private final int throttleInterval;
+    private final Duration retryAfter;
+    private final int truncatedDownloads;
+    private final double truncatedFraction;
+    private final boolean serverFilenames;
+
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger downloadCount = new AtomicInteger();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    private ScryfallStandInServer(Builder builder) {
+        this.dataDirectory = Objects.requireNonNull(builder.dataDirectory);
+        this.port = Optional.ofNullable(builder.port).orElse(0);
+        this.latency = Optional.ofNullable(builder.latency).orElse(Duration.ZERO);
+        this.throttleInterval = Optional.ofNullable(builder.throttleInterval).orElse(0);
+        this.retryAfter = Optional.ofNullable(builder.retryAfter).orElse(Duration.ofSeconds(1));
+        this.truncatedDownloads = Optional.ofNullable(builder.truncatedDownloads).orElse(0);
+        this.truncatedFraction = Optional.ofNullable(builder.truncatedFraction).orElse(0.5);
+        this.serverFilenames = Optional.ofNullable(builder.serverFilenames).orElse(true);
+    }
+
+    public static final class Builder {
+        private final Path dataDirectory;
+        private Integer port;
+        private Duration latency;
+        private Integer throttleInterval;
+        private Duration retryAfter;
+        private Integer truncatedDownloads;
+        private Double truncatedFraction;
+        private Boolean serverFilenames;
+
+        /**
+         * @param dataDirectory a directory containing a bulk data drop and its {@code manifest.json}
+         */
+        public Builder(Path dataDirectory) {
+            this.dataDirectory = Objects.requireNonNull(dataDirectory);
+        }
+
+        /**
+         * Listen on a fixed port, instead of any free one.
+         */
+        public Builder withPort(int port) {
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * Wait before answering each request.
+         */
+        public Builder withLatency(Duration latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * Answer every {@code interval}th request with HTTP 429 and a {@code Retry-After} header, instead of serving
+         * it.
+         */
+        public Builder withThrottling(int interval, Duration retryAfter) {
+            Preconditions.checkArgument(interval > 0);
+            this.throttleInterval = interval;
+            this.retryAfter = Objects.requireNonNull(retryAfter);
+            return this;
+        }
+
+        /**
+         * Close the connection partway through the body of the first {@code count} file downloads, after promising
+         * the whole length.
+         */
+        public Builder withTruncatedDownloads(int count, double fraction) {
+            Preconditions.checkArgument(fraction >= 0.0 && fraction < 1.0);
+            this.truncatedDownloads = count;
+            this.truncatedFraction = fraction;
+            return this;
+        }
+
+        /**
+         * Set whether to name each bulk data file in an {@code x-bz-file-name} header, as Scryfall's file host does.
+         */
+        public Builder withServerFilenames(boolean serverFilenames) {
+            this.serverFilenames = serverFilenames;
+            return this;
+        }
+
+        public ScryfallStandInServer build() {
+            return new ScryfallStandInServer(this);
+        }
+    }
+
+    public synchronized ScryfallStandInServer start() throws IOException {
+        Preconditions.checkState(server == null, "Already started");
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setNameFormat("scryfall-stand-in-%d").setDaemon(true).build());
+        server.setExecutor(executor);
+        server.createContext("/bulk-data", exchange -> handle(exchange, this::serveListing));
+        server.createContext("/sets/", exchange -> handle(exchange, this::serveSets));
+        server.createContext("/file/", exchange -> handle(exchange, this::serveFile));
+        server.createContext("/cards/search", exchange -> handle(exchange, this::serveSearch));
+        server.start();
+        return this;
+    }
+
+    /**
+     * The base URI of the stand-in API, ending in a slash.
+     */
+    public URI getBaseUri() {
+        Preconditions.checkState(server != null, "Not started");
+        InetSocketAddress address = server.getAddress();
+        return URI.create(String.format("http://%s:%d/", address.getHostString(), address.getPort()));
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    private static interface Handler {
+        void serve(HttpExchange exchange) throws IOException;
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        try (exchange) {
+            int requestNumber = requestCount.incrementAndGet();
+            if (!latency.isZero()) {
+                Thread.sleep(latency.toMillis());
+            }
+            if (throttleInterval > 0 && requestNumber % throttleInterval == 0) {
+                exchange.getResponseHeaders().set("Retry-After", Long.toString(retryAfter.toSeconds()));
+                sendError(exchange, 429, "too_many_requests", "Too many requests");
+                return;
+            }
+            handler.serve(exchange);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String code, String details) throws IOException {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("object", "error");
+        error.put("code", code);
+        error.put("status", status);
+        error.put("details", details);
+        sendJson(exchange, status, new Gson().toJson(error));
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(body);
+        }
+    }
+
+    private Map<?, ?> readManifest() throws IOException {
+        try (Reader reader = Files.newBufferedReader(dataDirectory.resolve(MANIFEST_JSON))) {
+            return new Gson().fromJson(reader, Map.class);
+        }
+    }
+
+    private Optional<Path> getServedFile(String name) throws IOException {
+        Map<?, ?> files = (Map<?, ?>) readManifest().get("files");
+        return files.values().stream()
+                .map(filename -> dataDirectory.resolve((String) filename))
+                .filter(file -> file.getFileName().toString().equals(name))
+                .findAny();
+    }
+
+    /**
+     * Whether the request's validators match the resource, after setting the resource's validators on the response.
+     */
+    private static boolean isNotModified(HttpExchange exchange, String etag, Instant lastModified) {
+        Headers responseHeaders = exchange.getResponseHeaders();
+        responseHeaders.set("ETag", etag);
+        responseHeaders.set("Last-Modified",
+                DateTimeFormatter.RFC_1123_DATE_TIME.format(lastModified.atOffset(ZoneOffset.UTC)));
+        Headers requestHeaders = exchange.getRequestHeaders();
+        String ifNoneMatch = requestHeaders.getFirst("If-None-Match");
+        if (ifNoneMatch != null) {
+            return ifNoneMatch.equals(etag);
+        }
+        String ifModifiedSince = requestHeaders.getFirst("If-Modified-Since");
+        return ifModifiedSince != null && !lastModified.isAfter(
+                Instant.from(DateTimeFormatter.RFC_1123_DATE_TIME.parse(ifModifiedSince)).plusSeconds(1));
+    }
+
+    private static String createEtag(Path file) throws IOException {
+        return String.format("\"%x-%x\"", Files.size(file), Files.getLastModifiedTime(file).toMillis());
+    }
+
+    private void serveListing(HttpExchange exchange) throws IOException {
+        Path manifestFile = dataDirectory.resolve(MANIFEST_JSON);
+        if (isNotModified(exchange, createEtag(manifestFile), Files.getLastModifiedTime(manifestFile).toInstant())) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+        Map<?, ?> manifest = readManifest();
+        URI baseUri = getBaseUri();
+        List<Map<String, Object>> drops = new ArrayList<>();
+        for (Map.Entry<?, ?> file : ((Map<?, ?>) manifest.get("files")).entrySet()) {
+            String type = (String) file.getKey();
+            if (type.equals(SETS)) continue;
+            Path path = dataDirectory.resolve((String) file.getValue());
+            Map<String, Object> drop = new LinkedHashMap<>();
+            drop.put("object", "bulk_data");
+            drop.put("type", type);
+            drop.put("updated_at", manifest.get("latestUpdated"));
+            drop.put("size", Files.size(path));
+            drop.put("download_uri", baseUri.resolve("file/" + path.getFileName()).toString());
+            drop.put("content_type", "application/json");
+            drops.add(drop);
+        }
+        sendJson(exchange, 200, new Gson().toJson(ImmutableMap.of("object", "list", "has_more", false, "data", drops)));
+    }
+
+    private void serveSets(HttpExchange exchange) throws IOException {
+        Map<?, ?> files = (Map<?, ?>) readManifest().get("files");
+        String setsFilename = Optional.ofNullable((String) files.get(SETS)).orElse("sets.json");
+        serveFile(exchange, dataDirectory.resolve(setsFilename), Optional.empty());
+    }
+
+    private void serveFile(HttpExchange exchange) throws IOException {
+        String name = exchange.getRequestURI().getPath().substring("/file/".length());
+        Optional<Path> file = getServedFile(name);
+        if (file.isEmpty()) {
+            sendError(exchange, 404, "not_found", "No such file: " + name);
+            return;
+        }
+        // Scryfall's file host names each file with its type's directory, such as "default-cards/default-cards-...json"
+        Optional<String> serverFilename = serverFilenames
+                ? Optional.of(name.replaceFirst("-\\d+\\.json.*$", "") + "/" + name)
+                : Optional.empty();
+        serveFile(exchange, file.get(), serverFilename);
+    }
+
+    private void serveFile(HttpExchange exchange, Path file, Optional<String> serverFilename) throws IOException {
+        serverFilename.ifPresent(name -> exchange.getResponseHeaders().set("x-bz-file-name", name));
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        if (isNotModified(exchange, createEtag(file), Files.getLastModifiedTime(file).toInstant())) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+        long length = Files.size(file);
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.getResponseHeaders().set("Content-Length", Long.toString(length));
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+
+        long start = 0L;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        if (ifRange != null && !ifRange.equals(exchange.getResponseHeaders().getFirst("ETag"))
+                && !ifRange.equals(exchange.getResponseHeaders().getFirst("Last-Modified"))) {
+            // The client's partial copy is of another version, so send the whole file
+            range = null;
+        }
+        if (range != null) {
+            Matcher matcher = RANGE_PATTERN.matcher(range);
+            if (matcher.matches()) {
+                start = Long.parseLong(matcher.group(1));
+            }
+            if (start >= length) {
+                exchange.getResponseHeaders().set("Content-Range", "bytes */" + length);
+                exchange.sendResponseHeaders(416, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Range",
+                    String.format("bytes %d-%d/%d", start, length - 1, length));
+        }
+        long bodyLength = length - start;
+        exchange.sendResponseHeaders(start > 0 ? 206 : 200, bodyLength);
+
+        boolean truncated = downloadCount.incrementAndGet() <= truncatedDownloads;
+        long bytesToSend = truncated ? (long) (bodyLength * truncatedFraction) : bodyLength;
+        try (InputStream input = Files.newInputStream(file)) {
+            input.skipNBytes(start);
+            OutputStream responseBody = exchange.getResponseBody();
+            byte[] buffer = new byte[1 << 16];
+            long remaining = bytesToSend;
+            while (remaining > 0) {
+                int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) break;
+                responseBody.write(buffer, 0, read);
+                remaining -= read;
+            }
+            responseBody.flush();
+        }
+        if (truncated) {
+            // Closing the exchange short of the promised length drops the connection
+            throw new IOException("Truncated download of " + file.getFileName());
+        }
+    }
+
+    private static Map<String, String> parseQuery(URI uri) {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        if (uri.getRawQuery() != null) {
+            for (String parameter : uri.getRawQuery().split("&")) {
+                int separator = parameter.indexOf('=');
+                if (separator < 0) continue;
+                parameters.put(URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private void serveSearch(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = parseQuery(exchange.getRequestURI());
+        Matcher matcher = SET_QUERY_PATTERN.matcher(parameters.getOrDefault("q", ""));
+        if (!matcher.matches()) {
+            sendError(exchange, 400, "bad_request", "Only e: and set: queries are supported");
+            return;
+        }
+        String setCode = matcher.group(1).toLowerCase(Locale.ROOT);
+        int page = Integer.parseInt(parameters.getOrDefault("page", "1"));
+
+        String filename = (String) ((Map<?, ?>) readManifest().get("files")).get(ScryfallParser.BULK_DATA_TYPE);
+        Path file = dataDirectory.resolve(filename);
+        List<?> cards;
+        try (Reader reader = filename.endsWith(".gz")
+                ? new InputStreamReader(new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8)
+                : Files.newBufferedReader(file)) {
+            cards = ((List<?>) new Gson().fromJson(reader, List.class)).stream()
+                    .filter(card -> setCode.equals(((Map<?, ?>) card).get("set")))
+                    .collect(Collectors.toList());
+        }
+        int start = (page - 1) * SEARCH_PAGE_SIZE;
+        if (cards.isEmpty() || start >= cards.size()) {
+            sendError(exchange, 404, "not_found", "Your query didn't match any cards.");
+            return;
+        }
+        int end = Math.min(start + SEARCH_PAGE_SIZE, cards.size());
+        Map<String, Object> list = new LinkedHashMap<>();
+        list.put("object", "list");
+        list.put("total_cards", cards.size());
+        list.put("has_more", end < cards.size());
+        if (end < cards.size()) {
+            list.put("next_page", getBaseUri().resolve("cards/search?q="
+                    + URLEncoder.encode(matcher.group(), StandardCharsets.UTF_8) + "&page=" + (page + 1)).toString());
+        }
+        list.put("data", cards.subList(start, end));
+        sendJson(exchange, 200, new Gson().toJson(list));
+    }
+
+    /**
+     * Serve a data directory (defaulting to the current local drop) until the process is stopped. Takes an optional
+     * port.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path directory = args.length > 0 ? Path.of(args[0]) : Environment.getScryfallResourcePath().resolve("current");
+        Builder builder = new Builder(directory);
+        if (args.length > 1) {
+            builder.withPort(Integer.parseInt(args[1]));
+        }
+        ScryfallStandInServer server = builder.build().start();
+        System.out.println("Serving " + directory + " at " + server.getBaseUri());
+        Thread.currentThread().join();
+    }
+}
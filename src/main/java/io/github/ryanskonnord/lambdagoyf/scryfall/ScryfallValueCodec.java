@@ -0,0 +1,447 @@
+/*
+ * Lambdagoyf: A Software Suite for MTG Hobbyists
+ * https://github.com/RyanSkonnord/lambdagoyf
+ *
+ * Copyright 2024 Ryan Skonnord
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ryanskonnord.lambdagoyf.scryfall;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.ImmutableLongArray;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A compact binary encoding of {@link ScryfallFieldValues}.
+ * <p>
+ * Strings are pooled for the lifetime of an {@link Encoder} or {@link Decoder}. Each is written as its index in the
+ * pool, followed by its contents only if that index is new. Pooling both shrinks the output and deduplicates the
+ * strings when they are decoded. A stream must be decoded from the same starting point where its encoder began.
+ */
+final class ScryfallValueCodec {
+    private ScryfallValueCodec() {
+        throw new RuntimeException();
+    }
+
+    /**
+     * Encode values with a string pool of their own, so that they can be decoded without reading anything else.
+     */
+    static byte[] encode(ScryfallFieldValues values) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            new Encoder(out).writeFieldValues(values);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Encode only the values that cards are built from, so that two entries encode the same whenever their cards
+     * would be the same. The result is a key for comparing entries, and is not meant to be decoded.
+     */
+    static byte[] encodeModelFields(ScryfallFieldValues values) {
+        ScryfallFieldValues modelValues = ScryfallFieldValues.create();
+        for (ScryfallCardField field : ScryfallCardField.MODEL_FIELDS) {
+            Object value = values.getRaw(field);
+            if (field == ScryfallCardField.CARD_FACES && value != null) {
+                value = ((List<?>) value).stream()
+                        .map((Object face) -> retainModelFaceKeys((Map<?, ?>) face))
+                        .collect(ImmutableList.toImmutableList());
+            }
+            modelValues.put(field, value);
+        }
+        return encode(modelValues);
+    }
+
+    private static Map<?, ?> retainModelFaceKeys(Map<?, ?> face) {
+        Map<Object, Object> retained = new LinkedHashMap<>();
+        face.forEach((Object key, Object value) -> {
+            if (ScryfallCardField.MODEL_FACE_KEYS.contains(key)) {
+                retained.put(key, value);
+            }
+        });
+        return retained;
+    }
+
+    /**
+     * Decode a sequence of values that were each encoded by {@link #encode}.
+     */
+    static List<ScryfallFieldValues> decodeAll(ByteBuffer data) {
+        byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        List<ScryfallFieldValues> decoded = new ArrayList<>(2);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            while (in.available() > 0) {
+                decoded.add(new Decoder(in).readFieldValues());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return decoded;
+    }
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_STRING = 1;
+    private static final int TAG_NUMBER = 2;
+    private static final int TAG_TRUE = 3;
+    private static final int TAG_FALSE = 4;
+    private static final int TAG_LIST = 5;
+    private static final int TAG_MAP = 6;
+
+    private static final int PRESENCE_WORDS = (ScryfallCardField.values().length + Long.SIZE - 1) / Long.SIZE;
+
+
+    static final class Encoder {
+        private final DataOutputStream out;
+        private final Map<String, Integer> stringPool = new HashMap<>();
+
+        Encoder(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void writeFieldValues(ScryfallFieldValues values) throws IOException {
+            ScryfallCardField[] fields = ScryfallCardField.values();
+            long[] presence = new long[PRESENCE_WORDS];
+            for (ScryfallCardField field : fields) {
+                if (values.getRaw(field) != null) {
+                    presence[field.ordinal() / Long.SIZE] |= 1L << (field.ordinal() % Long.SIZE);
+                }
+            }
+            for (long word : presence) {
+                out.writeLong(word);
+            }
+            for (ScryfallCardField field : fields) {
+                Object value = values.getRaw(field);
+                if (value != null) {
+                    writeValue(field.getType(), value);
+                }
+            }
+        }
+
+        private void writeValue(ScryfallCardField.ValueType type, Object value) throws IOException {
+            switch (type) {
+                case STRING:
+                    writeString((String) value);
+                    break;
+                case BOOLEAN:
+                    out.writeBoolean((Boolean) value);
+                    break;
+                case INTEGER:
+                    out.writeLong((Long) value);
+                    break;
+                case DECIMAL:
+                    out.writeDouble((Double) value);
+                    break;
+                case UUID:
+                    writeUuid((UUID) value);
+                    break;
+                case DATE:
+                    out.writeLong(((LocalDate) value).toEpochDay());
+                    break;
+                case URI:
+                    writeString(value.toString());
+                    break;
+                case STRINGS: {
+                    List<?> list = (List<?>) value;
+                    writeVarInt(list.size());
+                    for (Object element : list) {
+                        writeString((String) element);
+                    }
+                    break;
+                }
+                case UUIDS: {
+                    List<?> list = (List<?>) value;
+                    writeVarInt(list.size());
+                    for (Object element : list) {
+                        writeUuid((UUID) element);
+                    }
+                    break;
+                }
+                case INTEGERS: {
+                    ImmutableLongArray array = (ImmutableLongArray) value;
+                    writeVarInt(array.length());
+                    for (int i = 0; i < array.length(); i++) {
+                        out.writeLong(array.get(i));
+                    }
+                    break;
+                }
+                case STRING_MAP:
+                    writeStringMap((Map<?, ?>) value);
+                    break;
+                case STRING_MAPS: {
+                    List<?> list = (List<?>) value;
+                    writeVarInt(list.size());
+                    for (Object element : list) {
+                        writeStringMap((Map<?, ?>) element);
+                    }
+                    break;
+                }
+                case OBJECTS: {
+                    List<?> list = (List<?>) value;
+                    writeVarInt(list.size());
+                    for (Object element : list) {
+                        writeUntyped(element);
+                    }
+                    break;
+                }
+                default:
+                    throw new AssertionError(type);
+            }
+        }
+
+        private void writeUntyped(Object value) throws IOException {
+            if (value == null) {
+                out.writeByte(TAG_NULL);
+            } else if (value instanceof String) {
+                out.writeByte(TAG_STRING);
+                writeString((String) value);
+            } else if (value instanceof Number) {
+                out.writeByte(TAG_NUMBER);
+                out.writeDouble(((Number) value).doubleValue());
+            } else if (value instanceof Boolean) {
+                out.writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+            } else if (value instanceof List) {
+                List<?> list = (List<?>) value;
+                out.writeByte(TAG_LIST);
+                writeVarInt(list.size());
+                for (Object element : list) {
+                    writeUntyped(element);
+                }
+            } else if (value instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) value;
+                out.writeByte(TAG_MAP);
+                writeVarInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeString((String) entry.getKey());
+                    writeUntyped(entry.getValue());
+                }
+            } else {
+                throw new IllegalArgumentException("Unexpected value: " + value.getClass());
+            }
+        }
+
+        private void writeStringMap(Map<?, ?> map) throws IOException {
+            writeVarInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeString((String) entry.getKey());
+                writeString((String) entry.getValue());
+            }
+        }
+
+        private void writeUuid(UUID uuid) throws IOException {
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        }
+
+        private void writeString(String value) throws IOException {
+            Integer index = stringPool.get(value);
+            if (index != null) {
+                writeVarInt(index);
+            } else {
+                int newIndex = stringPool.size();
+                stringPool.put(value, newIndex);
+                writeVarInt(newIndex);
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+
+        private void writeVarInt(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+    }
+
+    static final class Decoder {
+        private final DataInputStream in;
+        private final List<String> stringPool = new ArrayList<>();
+
+        Decoder(DataInputStream in) {
+            this.in = in;
+        }
+
+        ScryfallFieldValues readFieldValues() throws IOException {
+            long[] presence = new long[PRESENCE_WORDS];
+            for (int i = 0; i < presence.length; i++) {
+                presence[i] = in.readLong();
+            }
+            ScryfallFieldValues values = ScryfallFieldValues.create();
+            for (ScryfallCardField field : ScryfallCardField.values()) {
+                if ((presence[field.ordinal() / Long.SIZE] & (1L << (field.ordinal() % Long.SIZE))) != 0) {
+                    values.put(field, readValue(field.getType()));
+                }
+            }
+            return values;
+        }
+
+        private Object readValue(ScryfallCardField.ValueType type) throws IOException {
+            switch (type) {
+                case STRING:
+                    return readString();
+                case BOOLEAN:
+                    return in.readBoolean();
+                case INTEGER:
+                    return in.readLong();
+                case DECIMAL:
+                    return in.readDouble();
+                case UUID:
+                    return readUuid();
+                case DATE:
+                    return LocalDate.ofEpochDay(in.readLong());
+                case URI:
+                    return URI.create(readString());
+                case STRINGS: {
+                    int size = readVarInt();
+                    ImmutableList.Builder<String> builder = ImmutableList.builderWithExpectedSize(size);
+                    for (int i = 0; i < size; i++) {
+                        builder.add(readString());
+                    }
+                    return builder.build();
+                }
+                case UUIDS: {
+                    int size = readVarInt();
+                    ImmutableList.Builder<UUID> builder = ImmutableList.builderWithExpectedSize(size);
+                    for (int i = 0; i < size; i++) {
+                        builder.add(readUuid());
+                    }
+                    return builder.build();
+                }
+                case INTEGERS: {
+                    int size = readVarInt();
+                    ImmutableLongArray.Builder builder = ImmutableLongArray.builder(size);
+                    for (int i = 0; i < size; i++) {
+                        builder.add(in.readLong());
+                    }
+                    return builder.build();
+                }
+                case STRING_MAP:
+                    return readStringMap();
+                case STRING_MAPS: {
+                    int size = readVarInt();
+                    ImmutableList.Builder<ImmutableMap<String, String>> builder = ImmutableList.builderWithExpectedSize(size);
+                    for (int i = 0; i < size; i++) {
+                        builder.add(readStringMap());
+                    }
+                    return builder.build();
+                }
+                case OBJECTS: {
+                    int size = readVarInt();
+                    List<Object> list = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(readUntyped());
+                    }
+                    return ImmutableList.copyOf(list);
+                }
+                default:
+                    throw new AssertionError(type);
+            }
+        }
+
+        private Object readUntyped() throws IOException {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case TAG_NULL:
+                    return null;
+                case TAG_STRING:
+                    return readString();
+                case TAG_NUMBER:
+                    return in.readDouble();
+                case TAG_TRUE:
+                    return true;
+                case TAG_FALSE:
+                    return false;
+                case TAG_LIST: {
+                    int size = readVarInt();
+                    List<Object> list = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(readUntyped());
+                    }
+                    return list;
+                }
+                case TAG_MAP: {
+                    int size = readVarInt();
+                    Map<String, Object> map = new LinkedHashMap<>();
+                    for (int i = 0; i < size; i++) {
+                        String key = readString();
+                        map.put(key, readUntyped());
+                    }
+                    return map;
+                }
+                default:
+                    throw new ScryfallDataException();
+            }
+        }
+
+        private ImmutableMap<String, String> readStringMap() throws IOException {
+            int size = readVarInt();
+            ImmutableMap.Builder<String, String> builder = ImmutableMap.builderWithExpectedSize(size);
+            for (int i = 0; i < size; i++) {
+                String key = readString();
+                builder.put(key, readString());
+            }
+            return builder.build();
+        }
+
+        private UUID readUuid() throws IOException {
+            long mostSignificantBits = in.readLong();
+            return new UUID(mostSignificantBits, in.readLong());
+        }
+
+        private String readString() throws IOException {
+            int index = readVarInt();
+            if (index < stringPool.size()) {
+                return stringPool.get(index);
+            }
+            byte[] bytes = new byte[readVarInt()];
+            in.readFully(bytes);
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            stringPool.add(value);
+            return value;
+        }
+
+        private int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = in.readUnsignedByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
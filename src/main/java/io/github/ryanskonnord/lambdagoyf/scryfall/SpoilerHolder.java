@@ -0,0 +1,274 @@
+/*
+ * Lambdagoyf: A Software Suite for MTG Hobbyists
+ * https://github.com/RyanSkonnord/lambdagoyf
+ *
+ * Copyright 2024 Ryan Skonnord
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ryanskonnord.lambdagoyf.scryfall;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.Gson;
+import io.github.ryanskonnord.lambdagoyf.card.Spoiler;
+import io.github.ryanskonnord.lambdagoyf.card.SpoilerRevision;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Keeps an up-to-date spoiler for a long-running process. It refreshes the local drop in the background, builds a
+ * spoiler from any new data off the calling threads, and then swaps it in.
+ * <p>
+ * A caller should call {@link #get()} once per unit of work, such as converting a deck, and use that spoiler throughout
+ * it. Work that is under way when a new spoiler is swapped in finishes on the old one, and the old one can be collected
+ * once that work lets go of it. Cards whose data didn't change are carried over from the old spoiler rather than built
+ * again.
+ */
+public final class SpoilerHolder implements Supplier<Spoiler>, Closeable {
+
+    private static final String SETS_JSON = "sets.json";
+
+    private final ScryfallFetcher fetcher;
+    private final ScryfallParser parser;
+    private final Duration refreshInterval;
+    private final Optional<Duration> recentSetWindow;
+    private final ScheduledExecutorService executor;
+
+    private final AtomicReference<Loaded> current = new AtomicReference<>();
+    private final List<Consumer<? super Spoiler>> listeners = new CopyOnWriteArrayList<>();
+
+    private SpoilerHolder(Builder builder) {
+        fetcher = Objects.requireNonNull(builder.fetcher);
+        parser = Optional.ofNullable(builder.parser)
+                .orElseGet(() -> new ScryfallParser.Builder().withSnapshot(true).build());
+        refreshInterval = Optional.ofNullable(builder.refreshInterval).orElse(Duration.ofHours(1));
+        recentSetWindow = Optional.ofNullable(builder.recentSetWindow);
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("spoiler-refresh-%d").setDaemon(true).build());
+        if (refreshInterval.isNegative() || refreshInterval.isZero()) {
+            throw new IllegalArgumentException("refreshInterval must be positive");
+        }
+    }
+
+    public static final class Builder {
+        private final ScryfallFetcher fetcher;
+        private ScryfallParser parser;
+        private Duration refreshInterval;
+        private Duration recentSetWindow;
+
+        public Builder(ScryfallFetcher fetcher) {
+            this.fetcher = Objects.requireNonNull(fetcher);
+        }
+
+        /**
+         * Set the parser that builds each spoiler. Defaults to one that uses a snapshot.
+         */
+        public Builder withParser(ScryfallParser parser) {
+            this.parser = parser;
+            return this;
+        }
+
+        /**
+         * Set how long to wait between the end of one refresh and the start of the next. Defaults to one hour. The
+         * fetcher's own intervals decide how often this actually finds new data.
+         */
+        public Builder withRefreshInterval(Duration refreshInterval) {
+            this.refreshInterval = refreshInterval;
+            return this;
+        }
+
+        /**
+         * After each refresh, overlay the cards of sets released within a window before now or not yet released, so
+         * that newly previewed cards appear before the next drop. By default, only drops are used.
+         *
+         * @see ScryfallFetcher#fetchRecentSetOverlay
+         */
+        public Builder withRecentSetOverlay(Duration recentSetWindow) {
+            this.recentSetWindow = recentSetWindow;
+            return this;
+        }
+
+        public SpoilerHolder build() {
+            return new SpoilerHolder(this);
+        }
+    }
+
+    /**
+     * A spoiler along with what it was built from, to tell whether the data has changed since.
+     */
+    private static final class Loaded {
+        private final SpoilerRevision revision;
+        private final String sourceKey;
+
+        private Loaded(SpoilerRevision revision, String sourceKey) {
+            this.revision = Objects.requireNonNull(revision);
+            this.sourceKey = Objects.requireNonNull(sourceKey);
+        }
+    }
+
+    /**
+     * Identify the data in a directory by its content: the checksums of its bulk files and overlay, and its set list
+     * apart from the number of cards in each set. An overlay that is fetched again with the same cards, along with a
+     * set list whose counts have moved, then doesn't cause a spoiler to be built and swapped in; the previous one, with
+     * its expansions, is kept until cards actually change.
+     * <p>
+     * Data from before the manifest recorded checksums is identified by when it was downloaded and when its overlay
+     * was fetched.
+     */
+    private static String readSourceKey(Path directory) throws IOException {
+        Map<?, ?> manifest = readJson(directory.resolve("manifest.json"), Map.class);
+        Map<?, ?> overlay = (Map<?, ?>) manifest.get("overlay");
+        Map<?, ?> checksums = (Map<?, ?>) manifest.get("checksums");
+        List<Object> dataFiles = new ArrayList<>(((Map<?, ?>) manifest.get("files")).values());
+        dataFiles.remove(SETS_JSON);
+        if (overlay != null) {
+            dataFiles.add(overlay.get("file"));
+        }
+        if (checksums == null || !dataFiles.stream().allMatch(checksums::containsKey)) {
+            return String.join("/", directory.toString(), String.valueOf(manifest.get("downloadTime")),
+                    overlay == null ? "" : String.valueOf(overlay.get("fetchedTime")));
+        }
+
+        List<String> key = new ArrayList<>();
+        for (Object file : dataFiles) {
+            key.add(String.valueOf(((Map<?, ?>) checksums.get(file)).get("sha256")));
+        }
+        Map<?, ?> sets = readJson(directory.resolve(SETS_JSON), Map.class);
+        for (Object set : (List<?>) sets.get("data")) {
+            ((Map<?, ?>) set).remove("card_count");
+        }
+        key.add(Hashing.sha256().hashString(new Gson().toJson(sets), StandardCharsets.UTF_8).toString());
+        return String.join("/", key);
+    }
+
+    private static <T> T readJson(Path file, Class<T> type) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file)) {
+            return new Gson().fromJson(reader, type);
+        }
+    }
+
+    /**
+     * Load the first spoiler on the calling thread, then start refreshing in the background.
+     */
+    public SpoilerHolder start() throws IOException, InterruptedException {
+        Preconditions.checkState(current.get() == null, "Already started");
+        refresh();
+        long intervalMillis = refreshInterval.toMillis();
+        executor.scheduleWithFixedDelay(this::refreshInBackground, intervalMillis, intervalMillis,
+                TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    /**
+     * @return the latest spoiler
+     */
+    @Override
+    public Spoiler get() {
+        Loaded loaded = current.get();
+        Preconditions.checkState(loaded != null, "Not started");
+        return loaded.revision.getSpoiler();
+    }
+
+    /**
+     * Call a listener with each new spoiler after it is swapped in. Listeners are called on the refresh thread, so a
+     * slow listener delays the next refresh.
+     */
+    public void addListener(Consumer<? super Spoiler> listener) {
+        listeners.add(Objects.requireNonNull(listener));
+    }
+
+    public void removeListener(Consumer<? super Spoiler> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Refresh on the background thread without waiting for the next scheduled time.
+     *
+     * @return the spoiler that is current after the refresh, which may be the same one if nothing changed
+     */
+    public CompletableFuture<Spoiler> refreshNow() {
+        return CompletableFuture.supplyAsync(() -> {
+            refreshInBackground();
+            return get();
+        }, executor);
+    }
+
+    private void refreshInBackground() {
+        try {
+            refresh();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            // Keep serving the old spoiler, and try again next time
+            System.err.println("Could not refresh spoiler: " + e);
+        }
+    }
+
+    /**
+     * Fetch any new data and, if there is some, build a spoiler from it and swap it in. Only one refresh runs at a
+     * time.
+     */
+    private synchronized void refresh() throws IOException, InterruptedException {
+        Path directory = fetcher.refresh();
+        if (recentSetWindow.isPresent()) {
+            directory = fetcher.fetchRecentSetOverlay(directory, recentSetWindow.get());
+        }
+        String sourceKey = readSourceKey(directory);
+        Loaded previous = current.get();
+        if (previous != null && previous.sourceKey.equals(sourceKey)) {
+            return;
+        }
+        SpoilerRevision revision = parser.parseSpoilerRevision(directory,
+                Optional.ofNullable(previous).map(p -> p.revision));
+        current.set(new Loaded(revision, sourceKey));
+
+        Spoiler spoiler = revision.getSpoiler();
+        for (Consumer<? super Spoiler> listener : listeners) {
+            try {
+                listener.accept(spoiler);
+            } catch (RuntimeException e) {
+                System.err.println("Spoiler listener failed: " + e);
+            }
+        }
+    }
+
+    /**
+     * Stop refreshing. The current spoiler stays available.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
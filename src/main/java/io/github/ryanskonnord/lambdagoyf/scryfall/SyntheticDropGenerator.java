@@ -0,0 +1,397 @@
+/*
+ * Lambdagoyf: A Software Suite for MTG Hobbyists
+ * https://github.com/RyanSkonnord/lambdagoyf
+ *
+ * Copyright 2024 Ryan Skonnord
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ryanskonnord.lambdagoyf.scryfall;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import io.github.ryanskonnord.lambdagoyf.Environment;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a synthetic bulk data drop that is a whole multiple of a real one, for running ingestion and deck generation
+ * against a larger card pool than exists yet.
+ * <p>
+ * The first copy is the source drop unchanged. Each further copy gives every expansion a new set code and name, and
+ * every card a new name, and moves every UUID and numeric ID into a space of its own. Everything that refers to
+ * those values is changed the same way, so the copies keep the source's oracle groupings, collector numbers, MTGO ID
+ * pairs and {@code all_parts} references, and never collide with each other. Corrections that the card model keeps
+ * by Scryfall ID, such as {@link io.github.ryanskonnord.lambdagoyf.card.MtgoIdFix}, apply only to the first copy.
+ */
+public final class SyntheticDropGenerator {
+
+    private static final String MANIFEST_JSON = "manifest.json";
+    private static final String DEFAULT_CARDS = "default_cards";
+    private static final String SETS = "sets";
+
+    private static final Pattern UUID_PATTERN = Pattern.compile(
+            "[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+    private static final Splitter FACE_SPLITTER = Splitter.on(" // ");
+
+    /**
+     * Numeric IDs that must stay unique across the drop. The fields in each space are offset together, which keeps
+     * pairs such as an MTGO card's normal and foil IDs adjacent.
+     */
+    private static enum IdSpace {
+        MTGO("mtgo_id", "mtgo_foil_id"),
+        ARENA("arena_id"),
+        MULTIVERSE("multiverse_ids"),
+        TCGPLAYER("tcgplayer_id", "tcgplayer_etched_id"),
+        CARDMARKET("cardmarket_id");
+
+        private final ImmutableList<String> fields;
+
+        IdSpace(String... fields) {
+            this.fields = ImmutableList.copyOf(fields);
+        }
+    }
+
+    private final int scale;
+
+    private SyntheticDropGenerator(Builder builder) {
+        this.scale = Optional.ofNullable(builder.scale).orElse(2);
+    }
+
+    public static final class Builder {
+        private Integer scale;
+
+        public Builder withScale(int scale) {
+            Preconditions.checkArgument(scale >= 1);
+            this.scale = scale;
+            return this;
+        }
+
+        public SyntheticDropGenerator build() {
+            return new SyntheticDropGenerator(this);
+        }
+    }
+
+    /**
+     * Write a synthetic drop, with a manifest, from the {@code default_cards} and {@code sets} files of a downloaded
+     * drop.
+     */
+    public void generate(Path source, Path target) throws IOException {
+        Map<?, ?> sourceManifest;
+        try (Reader reader = Files.newBufferedReader(source.resolve(MANIFEST_JSON))) {
+            sourceManifest = new Gson().fromJson(reader, Map.class);
+        }
+        Map<?, ?> sourceFiles = (Map<?, ?>) sourceManifest.get("files");
+        String cardsFilename = (String) sourceFiles.get(DEFAULT_CARDS);
+        if (cardsFilename == null) {
+            throw new IOException("No " + DEFAULT_CARDS + " file in " + source);
+        }
+        String setsFilename = Optional.ofNullable((String) sourceFiles.get(SETS)).orElse("sets.json");
+        Files.createDirectories(target);
+
+        JsonObject setsJson;
+        try (Reader reader = openJson(source.resolve(setsFilename))) {
+            setsJson = JsonParser.parseReader(reader).getAsJsonObject();
+        }
+        JsonArray sourceSets = setsJson.getAsJsonArray("data");
+
+        Set<String> names = new HashSet<>();
+        Map<IdSpace, Long> maxIds = new EnumMap<>(IdSpace.class);
+        forEachEntry(source.resolve(cardsFilename), (JsonObject entry) -> {
+            forEachName(entry, (String name) -> FACE_SPLITTER.split(name).forEach(names::add));
+            for (IdSpace idSpace : IdSpace.values()) {
+                for (String field : idSpace.fields) {
+                    forEachNumber(entry, field, (Long id) -> maxIds.merge(idSpace, id, Math::max));
+                }
+            }
+        });
+        Map<IdSpace, Long> idStrides = new EnumMap<>(IdSpace.class);
+        for (Map.Entry<IdSpace, Long> entry : maxIds.entrySet()) {
+            // Round up to an even number so that an even normal ID stays even
+            idStrides.put(entry.getKey(), (entry.getValue() + 2) & ~1L);
+        }
+        checkForCollisions(sourceSets, names);
+
+        JsonArray sets = new JsonArray();
+        for (int copy = 0; copy < scale; copy++) {
+            for (JsonElement set : sourceSets) {
+                sets.add(copy == 0 ? set : copySet(set.getAsJsonObject().deepCopy(), copy));
+            }
+        }
+        setsJson.add("data", sets);
+        try (Writer writer = createJson(target.resolve(setsFilename))) {
+            new Gson().toJson(setsJson, writer);
+        }
+
+        try (JsonWriter writer = new JsonWriter(createJson(target.resolve(cardsFilename)))) {
+            Gson gson = new Gson();
+            writer.beginArray();
+            for (int copy = 0; copy < scale; copy++) {
+                int c = copy;
+                forEachEntry(source.resolve(cardsFilename), (JsonObject entry) ->
+                        gson.toJson(c == 0 ? entry : copyEntry(entry, c, idStrides), writer));
+            }
+            writer.endArray();
+        }
+
+        Map<String, Object> files = new LinkedHashMap<>();
+        files.put(DEFAULT_CARDS, cardsFilename);
+        files.put(SETS, setsFilename);
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put("downloadTime", sourceManifest.get("downloadTime"));
+        manifest.put("latestUpdated", sourceManifest.get("latestUpdated"));
+        manifest.put("files", files);
+        manifest.put("syntheticSource", source.toAbsolutePath().toString());
+        manifest.put("syntheticScale", scale);
+        try (Writer writer = Files.newBufferedWriter(target.resolve(MANIFEST_JSON))) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(manifest, writer);
+        }
+    }
+
+    private static Reader openJson(Path file) throws IOException {
+        InputStream input = Files.newInputStream(file);
+        if (file.getFileName().toString().endsWith(".gz")) {
+            input = new GZIPInputStream(input, 1 << 16);
+        }
+        return new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    private static Writer createJson(Path file) throws IOException {
+        OutputStream output = Files.newOutputStream(file);
+        if (file.getFileName().toString().endsWith(".gz")) {
+            output = new GZIPOutputStream(output, 1 << 16);
+        }
+        return new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    private static void forEachEntry(Path file, Consumer<JsonObject> action) throws IOException {
+        try (JsonReader reader = new JsonReader(openJson(file))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                action.accept(JsonParser.parseReader(reader).getAsJsonObject());
+            }
+            reader.endArray();
+        }
+    }
+
+    private static void forEachName(JsonObject entry, Consumer<String> action) {
+        forEachString(entry, "name", action);
+        forEachString(entry, "printed_name", action);
+        for (String nested : ImmutableList.of("card_faces", "all_parts")) {
+            JsonArray objects = entry.getAsJsonArray(nested);
+            if (objects == null) continue;
+            for (JsonElement object : objects) {
+                forEachString(object.getAsJsonObject(), "name", action);
+                forEachString(object.getAsJsonObject(), "printed_name", action);
+            }
+        }
+    }
+
+    private static void forEachString(JsonObject object, String field, Consumer<String> action) {
+        JsonElement value = object.get(field);
+        if (value != null && value.isJsonPrimitive()) {
+            action.accept(value.getAsString());
+        }
+    }
+
+    private static void forEachNumber(JsonObject object, String field, Consumer<Long> action) {
+        JsonElement value = object.get(field);
+        if (value == null || value.isJsonNull()) return;
+        if (value.isJsonArray()) {
+            for (JsonElement element : value.getAsJsonArray()) {
+                action.accept(element.getAsLong());
+            }
+        } else {
+            action.accept(value.getAsLong());
+        }
+    }
+
+    private void checkForCollisions(JsonArray sourceSets, Set<String> names) {
+        Set<String> codes = new HashSet<>();
+        Set<String> setNames = new HashSet<>();
+        for (JsonElement set : sourceSets) {
+            codes.add(set.getAsJsonObject().get("code").getAsString());
+            setNames.add(set.getAsJsonObject().get("name").getAsString());
+        }
+        for (int copy = 1; copy < scale; copy++) {
+            int c = copy;
+            Set<String> collisions = codes.stream().map(code -> copySetCode(code, c))
+                    .filter(codes::contains).collect(Collectors.toCollection(HashSet::new));
+            setNames.stream().map(name -> copySetName(name, c)).filter(setNames::contains).forEach(collisions::add);
+            names.stream().map(name -> copyCardName(name, c)).filter(names::contains).forEach(collisions::add);
+            if (!collisions.isEmpty()) {
+                throw new IllegalArgumentException("Synthetic values would collide with source values: " + collisions);
+            }
+        }
+    }
+
+    private static String copySetCode(String code, int copy) {
+        return code + "x" + (copy + 1);
+    }
+
+    private static String copySetName(String name, int copy) {
+        return name + " (Synthetic " + (copy + 1) + ")";
+    }
+
+    private static String copyCardName(String name, int copy) {
+        return FACE_SPLITTER.splitToStream(name)
+                .map(face -> face + " " + (copy + 1))
+                .collect(Collectors.joining(" // "));
+    }
+
+    private static UUID copyUuid(String uuid, int copy) {
+        return UUID.nameUUIDFromBytes((copy + ":" + uuid).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Replace every UUID in every string within an element, including those embedded in URIs.
+     */
+    private static JsonElement copyUuids(JsonElement element, int copy) {
+        if (element.isJsonObject()) {
+            for (Map.Entry<String, JsonElement> field : element.getAsJsonObject().entrySet()) {
+                field.setValue(copyUuids(field.getValue(), copy));
+            }
+        } else if (element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            for (int i = 0; i < array.size(); i++) {
+                array.set(i, copyUuids(array.get(i), copy));
+            }
+        } else if (element.isJsonPrimitive() && element.getAsJsonPrimitive().isString()) {
+            String value = element.getAsString();
+            if (value.length() >= 36) {
+                return new JsonPrimitive(UUID_PATTERN.matcher(value)
+                        .replaceAll(match -> copyUuid(match.group(), copy).toString()));
+            }
+        }
+        return element;
+    }
+
+    private static void replaceString(JsonObject object, String field, String target, String replacement) {
+        JsonElement value = object.get(field);
+        if (value != null && value.isJsonPrimitive()) {
+            object.addProperty(field, value.getAsString().replace(target, replacement));
+        }
+    }
+
+    private static void mapString(JsonObject object, String field, UnaryOperator<String> mapping) {
+        JsonElement value = object.get(field);
+        if (value != null && value.isJsonPrimitive()) {
+            object.addProperty(field, mapping.apply(value.getAsString()));
+        }
+    }
+
+    private static JsonObject copySet(JsonObject set, int copy) {
+        copyUuids(set, copy);
+        String code = set.get("code").getAsString();
+        String newCode = copySetCode(code, copy);
+        set.addProperty("code", newCode);
+        mapString(set, "name", name -> copySetName(name, copy));
+        mapString(set, "mtgo_code", mtgoCode -> copySetCode(mtgoCode, copy));
+        mapString(set, "arena_code", arenaCode -> copySetCode(arenaCode, copy));
+        mapString(set, "parent_set_code", parentCode -> copySetCode(parentCode, copy));
+        mapString(set, "block_code", blockCode -> copySetCode(blockCode, copy));
+        mapString(set, "block", block -> copySetName(block, copy));
+        replaceString(set, "scryfall_uri", "/sets/" + code, "/sets/" + newCode);
+        replaceString(set, "search_uri", "e%3A" + code, "e%3A" + newCode);
+        // A synthetic set has no TCGplayer group
+        set.remove("tcgplayer_id");
+        return set;
+    }
+
+    private static JsonObject copyEntry(JsonObject entry, int copy, Map<IdSpace, Long> idStrides) {
+        copyUuids(entry, copy);
+
+        String code = entry.get("set").getAsString();
+        String newCode = copySetCode(code, copy);
+        entry.addProperty("set", newCode);
+        mapString(entry, "set_name", name -> copySetName(name, copy));
+        replaceString(entry, "scryfall_uri", "/card/" + code + "/", "/card/" + newCode + "/");
+        replaceString(entry, "scryfall_set_uri", "/sets/" + code, "/sets/" + newCode);
+        replaceString(entry, "set_search_uri", "e%3A" + code, "e%3A" + newCode);
+
+        mapString(entry, "name", name -> copyCardName(name, copy));
+        mapString(entry, "printed_name", name -> copyCardName(name, copy));
+        for (String nested : ImmutableList.of("card_faces", "all_parts")) {
+            JsonArray objects = entry.getAsJsonArray(nested);
+            if (objects == null) continue;
+            for (JsonElement object : objects) {
+                mapString(object.getAsJsonObject(), "name", name -> copyCardName(name, copy));
+                mapString(object.getAsJsonObject(), "printed_name", name -> copyCardName(name, copy));
+            }
+        }
+
+        for (Map.Entry<IdSpace, Long> idStride : idStrides.entrySet()) {
+            long offset = copy * idStride.getValue();
+            for (String field : idStride.getKey().fields) {
+                JsonElement value = entry.get(field);
+                if (value == null || value.isJsonNull()) continue;
+                if (value.isJsonArray()) {
+                    JsonArray ids = new JsonArray();
+                    for (JsonElement id : value.getAsJsonArray()) {
+                        ids.add(id.getAsLong() + offset);
+                    }
+                    entry.add(field, ids);
+                } else {
+                    entry.addProperty(field, value.getAsLong() + offset);
+                }
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Takes a source drop directory (defaulting to the current local drop), a target directory and a scale.
+     */
+    public static void main(String[] args) throws IOException {
+        Path source = args.length > 0 ? Path.of(args[0]) : Environment.getScryfallResourcePath().resolve("current");
+        Path target = args.length > 1 ? Path.of(args[1])
+                : Environment.getScryfallResourcePath().resolve("synthetic");
+        int scale = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        new Builder().withScale(scale).build().generate(source, target);
+    }
+}